@@ -17,6 +17,15 @@ public class Matrix2 {
         return new Vector2(x2,y2);
     }
 
+    /**
+     * writes this*v into dest without allocating, dest may be v itself
+     */
+    public Vector2 multiplyInto(Vector2 v, Vector2 dest) {
+        float x2 = xx*v.x + xy*v.y;
+        float y2 = yx*v.x + yy*v.y;
+        return dest.set(x2,y2);
+    }
+
     public float det() {
         return xx*yy-xy*yx;
     }
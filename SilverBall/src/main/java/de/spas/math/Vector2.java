@@ -15,16 +15,48 @@ public class Vector2 {
         this.y = y;
     }
 
+    public Vector2 set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
     public Vector2 add(Vector2 v) {
         x+=v.x;
         y+=v.y;
         return this;
     }
 
+    public Vector2 sub(Vector2 v) {
+        x-=v.x;
+        y-=v.y;
+        return this;
+    }
+
+    public float dot(Vector2 v) {
+        return x*v.x+y*v.y;
+    }
+
     public float length() {
         return (float) Math.sqrt(x*x+y*y);
     }
 
+    public float lengthSquared() {
+        return x*x+y*y;
+    }
+
+    /**
+     * scales this vector to length 1, a zero vector stays unchanged
+     */
+    public Vector2 normalize() {
+        float l = length();
+        if(l>0) {
+            x/=l;
+            y/=l;
+        }
+        return this;
+    }
+
     public Vector2 multiply(float p) {
         x*=p;
         y*=p;
@@ -37,6 +69,15 @@ public class Vector2 {
         return this;
     }
 
+    /**
+     * this = this*p + v
+     */
+    public Vector2 scaleAdd(float p, Vector2 v) {
+        x = x*p + v.x;
+        y = y*p + v.y;
+        return this;
+    }
+
     public void copyFrom(Vector2 v) {
         x = v.x;
         y = v.y;
@@ -0,0 +1,75 @@
+package de.spas.silverball;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+import de.spas.silverball.render.RenderBackend;
+
+/**
+ * Replays render commands onto a Canvas. Texture ids are bitmaps registered with setBitmap(),
+ * paint ids index the paints given to the constructor. Bitmaps that are missing are skipped.
+ */
+class CanvasBackend implements RenderBackend {
+
+    private final Paint bitmapPaint;
+    private final Paint[] paints;
+    private Bitmap[] bitmaps = new Bitmap[8];
+    private final Rect src = new Rect();
+    private final RectF dst = new RectF();
+    private Canvas canvas;
+
+    CanvasBackend(Paint bitmapPaint, Paint... paints) {
+        this.bitmapPaint = bitmapPaint;
+        this.paints = paints;
+    }
+
+    void setBitmap(int texture, Bitmap bitmap) {
+        if(texture>=bitmaps.length) bitmaps = Arrays.copyOf(bitmaps, Math.max(texture+1, bitmaps.length*2));
+        bitmaps[texture] = bitmap;
+    }
+
+    /**
+     * forgets the bitmaps from the given id on, so they can be garbage collected
+     */
+    void clearBitmaps(int from) {
+        if(from<bitmaps.length) Arrays.fill(bitmaps, from, bitmaps.length, null);
+    }
+
+    /**
+     * @param canvas drawn on by the following commands
+     */
+    void begin(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void clear() {
+        canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+    }
+
+    @Override
+    public void bitmap(int texture, float srcLeft, float srcTop, float srcRight, float srcBottom,
+                       float left, float top, float right, float bottom) {
+        Bitmap bitmap = texture<bitmaps.length ? bitmaps[texture] : null;
+        if(bitmap==null || bitmap.isRecycled()) return;
+        src.set((int) srcLeft, (int) srcTop, (int) srcRight, (int) srcBottom);
+        dst.set(left, top, right, bottom);
+        canvas.drawBitmap(bitmap, src, dst, bitmapPaint);
+    }
+
+    @Override
+    public void circle(int paint, float x, float y, float radius) {
+        canvas.drawCircle(x, y, radius, paints[paint]);
+    }
+
+    @Override
+    public void text(int paint, char[] chars, int length, float x, float y) {
+        canvas.drawText(chars, 0, length, x, y, paints[paint]);
+    }
+}
@@ -1,44 +1,84 @@
 package de.spas.silverball;
 
-import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.media.AudioManager;
-import android.media.SoundPool;
-
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
-import de.spas.silverball.model.Level;
-import de.spas.silverball.model.Trap;
-import de.spas.math.Matrix2;
 import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.physics.BallSwarm;
+import de.spas.silverball.physics.FixedStepLoop;
+import de.spas.silverball.physics.InputRing;
+import de.spas.silverball.physics.LowPassFilter;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.replay.ReplayRecorder;
+import de.spas.tools.SoundService;
 
 
 /**
  * Created by uwe on 23.09.13.
+ * One engine plays all levels of a game: loadLevel() resets the simulation and its
+ * buffers, the sensor stays registered from level to level until pause().
+ * In swarm mode a level starts with SWARM_BALLS small balls instead of one. Every ball that
+ * reaches the hole scores its share of the points left at that time, the level is won when
+ * at least one did once all balls are gone or the time is up. A level where not a single swarm
+ * ball finds a place is played with the one ball.
  */
-public class GameEngine implements SensorEventListener {
+public class GameEngine implements SensorEventListener, FixedStepLoop.Stepper {
 
     private static final long FRAME_INTERVAL = GameTextureView.FRAME_INTERVAL;
     private static final float BOUNCE_SOUND_THRESHOLD = 5f;
+    private static final long BOUNCE_SOUND_INTERVAL = 100;
+    private static final int PRIORITY_HIT = 1;
+    private static final int PRIORITY_EVENT = 2;
     public static final String LOG_TAG = "GameEngine";
-    private final SoundPool soundPool;
-    private final int successSoundId, gameOverSoundId, hitSoundId;
+    private final SoundService sounds;
     private final static float ACCELERATION_SCALE=12f;
-    private Vector2 location, velocity, acceleration,previousPosition;
+    private final static float INPUT_CUTOFF_HZ=5f;
+    private final static int INPUT_CAPACITY=64;
+    private final Simulation simulation = new Simulation(FRAME_INTERVAL *0.001f);
+    public static final int SWARM_BALLS = 100;
+    private final static float SWARM_BALL_RADIUS = 0.2f;
+    private final BallSwarm swarm = new BallSwarm(FRAME_INTERVAL *0.001f, SWARM_BALLS, SWARM_BALL_RADIUS);
+    // positions before the step by ball index, for interpolation
+    private final float[] swarmPreviousX = new float[SWARM_BALLS];
+    private final float[] swarmPreviousY = new float[SWARM_BALLS];
+    private boolean swarmMode;
+    // the current level is played by the swarm, false in swarm mode if no ball found a place
+    private boolean swarmLevel;
+    private int swarmScore;
     private GameTextureView gameView;
     private SensorManager sensorManager;
-    private ScheduledExecutorService service;
     private OnGameEventListener onGameEventListener;
-    private final Level level;
+    private Level level;
     private int pointsStart;
     private int points;
     private int time;
-    private long deadline;
+    private volatile boolean running;
+    // sensor thread
+    private final LowPassFilter filter = new LowPassFilter(INPUT_CUTOFF_HZ);
+    private boolean clockOffsetKnown;
+    private long clockOffset;
+    // handed to the game thread, which samples it at the time of each step
+    private final InputRing input = new InputRing(INPUT_CAPACITY);
+    private final Vector2 sampled = new Vector2();
+    private final ReplayRecorder recorder = new ReplayRecorder();
+    private File replayDir;
+    // the files are written in the background, the next level must not wait for them
+    private final ExecutorService replayWriter = Executors.newSingleThreadExecutor();
+    private boolean listening;
+    // when the last level was won, for the transition time to the next one
+    private volatile long levelEndTime;
 
 
     interface OnGameEventListener {
@@ -46,46 +86,137 @@ public class GameEngine implements SensorEventListener {
         void onGameOver();
     }
 
-    public GameEngine(Context context, SensorManager sensorManager, GameTextureView gameView, OnGameEventListener onGameEventListener, Level level) {
+    public GameEngine(SoundService sounds, SensorManager sensorManager, GameTextureView gameView, OnGameEventListener onGameEventListener) {
+        this.sounds = sounds;
         this.sensorManager = sensorManager;
         this.gameView = gameView;
         this.onGameEventListener = onGameEventListener;
-        this.level = level;
-        soundPool = new SoundPool(10, AudioManager.STREAM_MUSIC, 0);
-        successSoundId = soundPool.load(context,R.raw.success,1);
-        gameOverSoundId = soundPool.load(context, R.raw.lava,1);
-        hitSoundId = soundPool.load(context, R.raw.hit,1);
     }
 
+    /**
+     * every run is saved there as levelN.sbr when it ends, N the level number, for ReplayPlayer
+     */
+    public void setReplayDir(File replayDir) {
+        this.replayDir = replayDir;
+    }
 
 
-    public void start() {
-        service = Executors.newSingleThreadScheduledExecutor();
-        Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_GAME);
-        location = new Vector2(level.getBall().getStartx(), level.getBall().getStarty());
-        velocity = new Vector2();
-        previousPosition = new Vector2();
-        acceleration = new Vector2();
+    /**
+     * plays the following levels with a swarm of balls or, by default, a single one
+     */
+    public synchronized void setSwarmMode(boolean swarmMode) {
+        this.swarmMode = swarmMode;
+    }
+
+    public boolean isSwarmMode() {
+        return swarmMode;
+    }
+
+    /**
+     * starts a level, the previous one must have ended. The input keeps flowing from the last level,
+     * the device is still tilted the same way.
+     */
+    public synchronized void loadLevel(Level level) {
+        this.level = level;
+        if(!listening) {
+            // the sensor was off, its old samples tell nothing about now
+            filter.reset();
+            input.clear();
+            clockOffsetKnown = false;
+            sampled.set(0, 0);
+            Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_GAME);
+            listening = true;
+        }
         time = level.getTime();
-        deadline = System.currentTimeMillis()+time*1000;
         points = pointsStart = level.getPoints();
+        // a level too tight for any swarm ball is played with the single ball
+        swarmLevel = swarmMode && swarm.reset(level, SWARM_BALLS, System.nanoTime())>0;
+        if(swarmLevel) {
+            // a replay holds a single ball run, swarm runs are not recorded
+            swarmScore = 0;
+        } else {
+            recorder.begin(level.getNumber(), simulation.getTimeStep());
+            simulation.reset(level);
+        }
+        running = true;
+
+        gameView.startLevel(level, levelEndTime);
+        levelEndTime = 0;
+        if(swarmLevel) {
+            System.arraycopy(swarm.x, 0, swarmPreviousX, 0, swarm.getCount());
+            System.arraycopy(swarm.y, 0, swarmPreviousY, 0, swarm.getCount());
+            gameView.publishSwarm(swarm, swarmPreviousX, swarmPreviousY, points);
+        } else {
+            gameView.publishState(simulation.getLocation(), simulation.getLocation(), points);
+        }
+        gameView.setStepper(this);
+    }
+
+    /**
+     * ends the level, the sensor stays on for the next one. Holds the lock of loadLevel() and step(),
+     * so only one of the game and the UI thread saves the replay, and never while a step records into it.
+     */
+    public synchronized void stop() {
+        boolean wasRunning = running;
+        running = false;
+        gameView.setStepper(null);
+        gameView.setPlaying(false);
+        if(wasRunning && replayDir!=null && !swarmLevel) saveReplay();
+    }
 
-        gameView.startLevel(level);
+    /**
+     * ends the level and turns the sensor off until the next loadLevel()
+     */
+    public synchronized void pause() {
+        stop();
+        if(listening) {
+            sensorManager.unregisterListener(this);
+            listening = false;
+        }
+    }
 
-        service.scheduleAtFixedRate(this::gameLoop, FRAME_INTERVAL, FRAME_INTERVAL, TimeUnit.MILLISECONDS);
+    /**
+     * ends the level and stops the replay writer thread once the replays queued so far are written.
+     * The engine cannot be used afterwards, call it when the activity is destroyed.
+     */
+    public synchronized void release() {
+        pause();
+        replayWriter.shutdown();
     }
 
-    public void stop() {
-        gameView.setPlaying(false);
-        service.shutdown();
-        sensorManager.unregisterListener(this);
+    private void saveReplay() {
+        if(replayWriter.isShutdown()) return;
+        File file = new File(replayDir, "level" + level.getNumber() + ".sbr");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            recorder.writeTo(bytes);
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "saving replay threw exception", e);
+            return;
+        }
+        replayWriter.execute(() -> {
+            replayDir.mkdirs();
+            try(OutputStream out = new FileOutputStream(file)) {
+                bytes.writeTo(out);
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "saving replay threw exception", e);
+            }
+        });
     }
 
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
-        acceleration.x = sensorEvent.values[1]*ACCELERATION_SCALE;
-        acceleration.y = sensorEvent.values[0]*ACCELERATION_SCALE;
+        // sensor timestamps need not share the base of System.nanoTime, the smallest
+        // difference seen is the best guess for the offset (delivery is never early)
+        long offset = System.nanoTime() - sensorEvent.timestamp;
+        if(!clockOffsetKnown || offset < clockOffset) {
+            clockOffset = offset;
+            clockOffsetKnown = true;
+        }
+        long eventTime = sensorEvent.timestamp + clockOffset;
+        filter.apply(eventTime, sensorEvent.values[1]*ACCELERATION_SCALE, sensorEvent.values[0]*ACCELERATION_SCALE);
+        input.push(eventTime, filter.getX(), filter.getY());
     }
 
     @Override
@@ -94,63 +225,111 @@ public class GameEngine implements SensorEventListener {
     }
 
 
-    public void gameLoop() {
+    /**
+     * one physics step, called by the game loop of the view. Level time is counted
+     * in steps, so the game does not depend on how regularly the loop runs.
+     * Synchronized with loadLevel() and pause() on the UI thread, uncontended while a level is played.
+     */
+    @Override
+    public synchronized boolean step(long stepTime) {
+        if(!running) return false;
+        if(swarmLevel) return stepSwarm(stepTime);
 
-        if(System.currentTimeMillis() > deadline) {
+        if(simulation.getSteps()*FRAME_INTERVAL >= time*1000L) {
             stop();
             onGameEventListener.onGameOver();
-            return;
+            return false;
         }
 
+        // the input of the step is kept as it is recorded, so a replay repeats the run
+        input.sample(stepTime, sampled);
+        recorder.record(sampled);
+        simulation.setAcceleration(sampled.x, sampled.y);
+
         // ball movement
-        velocity.add(acceleration,FRAME_INTERVAL *0.001f);
-        previousPosition.copyFrom(location);
-        location.add(velocity, FRAME_INTERVAL *0.001f);
-        gameView.setBallPosition(location);
+        Simulation.Event event = simulation.step();
 
         // calc points
-        points = Math.round((deadline-System.currentTimeMillis()) * pointsStart*0.001f / time  );
-        gameView.setPoints(points);
-
-        boolean bounced = gameView.checkBounce();
-        if(bounced) {
-            Matrix2 bounceMatrix = gameView.getBounceMatrix();
-            velocity = bounceMatrix.multiply(velocity);
-
-            if(velocity.length()>BOUNCE_SOUND_THRESHOLD) {
-                playSound(hitSoundId);
-            }
-            // move ball to bounced position instead
-            location.copyFrom(previousPosition);
-            location.add(velocity, FRAME_INTERVAL *0.001f);
-            gameView.setBallPosition(location);
+        long remaining = time*1000L - simulation.getSteps()*FRAME_INTERVAL;
+        points = Math.round(remaining * pointsStart*0.001f / time  );
+        gameView.publishState(simulation.getPreviousPosition(), simulation.getLocation(), points);
+
+        switch (event) {
+            case BOUNCE:
+                if(simulation.getVelocity().lengthSquared()>BOUNCE_SOUND_THRESHOLD*BOUNCE_SOUND_THRESHOLD) {
+                    sounds.play(R.raw.hit, PRIORITY_HIT, BOUNCE_SOUND_INTERVAL);
+                }
+                break;
+            case TRAP:
+                hitTrap();
+                return false;
+            case HOLE:
+                levelEndTime = System.nanoTime();
+                stop();
+                sounds.play(R.raw.success, PRIORITY_EVENT);
+                onGameEventListener.onBallInHole(points);
+                // the listener may have loaded the next level already, which this loop must not step on
+                return false;
         }
 
-        Trap trap = gameView.getHitTrap();
-
-        if(trap!=null) {
-            hitTrap();
-            return;
-        }
+        return running;
+    }
 
-        if(gameView.isBallInHole()) {
-            stop();
-            playSound(successSoundId);
-            onGameEventListener.onBallInHole(points);
+    /**
+     * step() in swarm mode
+     */
+    private boolean stepSwarm(long stepTime) {
+        if(swarm.getSteps()*FRAME_INTERVAL >= time*1000L) return endSwarm();
+
+        input.sample(stepTime, sampled);
+        swarm.setAcceleration(sampled.x, sampled.y);
+        System.arraycopy(swarm.x, 0, swarmPreviousX, 0, swarm.getCount());
+        System.arraycopy(swarm.y, 0, swarmPreviousY, 0, swarm.getCount());
+        int holed = swarm.getHoled();
+        int trapped = swarm.getTrapped();
+        swarm.step();
+
+        long remaining = time*1000L - swarm.getSteps()*FRAME_INTERVAL;
+        points = Math.round(remaining * pointsStart*0.001f / time  );
+        // every ball is worth its share of the level
+        if(swarm.getCount()>0) swarmScore += (swarm.getHoled() - holed) * points / swarm.getCount();
+        gameView.publishSwarm(swarm, swarmPreviousX, swarmPreviousY, points);
+
+        if(swarm.getHoled()>holed) sounds.play(R.raw.success, PRIORITY_HIT, BOUNCE_SOUND_INTERVAL);
+        if(swarm.getTrapped()>trapped) sounds.play(R.raw.lava, PRIORITY_HIT, BOUNCE_SOUND_INTERVAL);
+        if(swarm.getActiveCount()==0) return endSwarm();
+        return running;
+    }
 
+    /**
+     * all balls are gone or the time is up: won if any ball made it into the hole
+     */
+    private boolean endSwarm() {
+        stop();
+        if(swarm.getHoled()>0) {
+            levelEndTime = System.nanoTime();
+            sounds.play(R.raw.success, PRIORITY_EVENT);
+            onGameEventListener.onBallInHole(swarmScore);
+        } else {
+            sounds.play(R.raw.lava, PRIORITY_EVENT);
+            onGameEventListener.onGameOver();
         }
-
-        //Log.d(getClass().getSimpleName(), Integer.toString(gameView.getFps()) + " fps");
-
+        return false;
     }
 
-    private void playSound(int id) {
-            soundPool.play(id, 1, 1,1,0,1f);
+    public Level getLevel() {
+        return level;
     }
 
+    /**
+     * @return the steps played of the current or last level
+     */
+    public long getSteps() {
+        return swarmLevel ? swarm.getSteps() : simulation.getSteps();
+    }
 
     private void hitTrap() {
-        playSound(gameOverSoundId);
+        sounds.play(R.raw.lava, PRIORITY_EVENT);
         stop();
         onGameEventListener.onGameOver();
 
@@ -5,57 +5,130 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.graphics.Typeface;
 import android.graphics.drawable.BitmapDrawable;
+import android.os.Debug;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.TextureView;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import de.spas.silverball.model.Level;
-import de.spas.silverball.model.Trap;
-import de.spas.math.Matrix2;
+import de.spas.silverball.metrics.FrameMetrics;
+import de.spas.silverball.render.RenderCommands;
+import de.spas.silverball.physics.BallSwarm;
+import de.spas.silverball.physics.Clock;
+import de.spas.silverball.physics.FixedStepLoop;
+import de.spas.silverball.physics.Snapshot;
+import de.spas.silverball.physics.SnapshotExchange;
 import de.spas.math.Vector2;
+import de.spas.tools.HudText;
+import de.spas.tools.TextureCache;
 
 /**
  * Created by uwe on 01.03.16.
  */
 public class GameTextureView extends TextureView implements TextureView.SurfaceTextureListener {
 
-    private final static float SIZE = 32;
     public static final long FRAME_INTERVAL = 20;
-    private static final float BOUNCE_FACTOR = 0.25f;
+    // the loop ticks at display rate, physics runs at FRAME_INTERVAL in between
+    private static final long TICK_INTERVAL_NANOS = 16_666_667;
+    private static final int MAX_STEPS_PER_TICK = 5;
+    // texture memory budget, an eighth of the heap
+    private static final int TEXTURE_CACHE_BYTES = (int) (Runtime.getRuntime().maxMemory() / 8);
+    private static final long OVERLAY_UPDATE_NANOS = 1_000_000_000L;
+    private static final int OVERLAY_LINES = 6;
+    // ids of the render commands: fixed textures, level textures follow
+    private static final int TEXTURE_STATIC_LAYER = 0;
+    private static final int TEXTURE_BALL = 1;
+    private static final int PAINT_HOLE = 0;
+    private static final int PAINT_TEXT = 1;
+    private static final int PAINT_DEBUG = 2;
+    // layers of the render commands: hole, tiles, texts in the static layer; static layer, balls, texts in a frame
+    private static final int LAYER_BACKGROUND = 0;
+    private static final int LAYER_TILES = 1;
+    private static final int LAYER_BALLS = 1;
+    private static final int LAYER_TEXT = 2;
     private Vector2 ballLocation = new Vector2();
-    private float holeX,holeY;
+    // swarm mode: pixel positions of the balls in this frame, game thread only
+    private float[] swarmX = new float[0];
+    private float[] swarmY = new float[0];
+    private boolean swarmMode;
+    private int swarmCount;
+    private float swarmRadius;
     private float scale;
-    private int points;
-    private int totalPoints;
+    private volatile int totalPoints;
+    private final SnapshotExchange snapshots = new SnapshotExchange();
     private BitmapDrawable ball;
-    private Map<String,Bitmap> bitmaps = new HashMap<>();
+    private final TextureCache textures;
     private Paint paintBitmap = new Paint();
     private Paint paintHole = new Paint();
     private Paint paintText = new Paint();
-    private RectF drawRect = new RectF();
     private Rect ballRect = new Rect();
-    private Rect rect = new Rect();
+    // the game thread, kept while the view is attached, ticking while there is a surface
     private ScheduledExecutorService executorService;
+    private ScheduledFuture<?> ticking;
+    private final FixedStepLoop loop = new FixedStepLoop(Clock.SYSTEM, TimeUnit.MILLISECONDS.toNanos(FRAME_INTERVAL), MAX_STEPS_PER_TICK);
+    private volatile FixedStepLoop.Stepper stepper;
+    private FixedStepLoop.Stepper activeStepper;
+    private Level activeLevel;
     private long t;
     private long frames;
-    private Level level;
-    private RectF playfield;
-    private Trap hitTrap;
-    private boolean ballInHole;
-    private boolean playing;
-    private Matrix2 bounceMatrix = new Matrix2();
+    private volatile Level level;
+    private volatile boolean playing;
+    // hole, traps, walls and the texts that do not change during a level
+    private Bitmap staticLayer;
+    private Canvas staticCanvas;
+    private Level staticLevel;
+    private volatile boolean staticLayerValid;
+    private final Rect dirty = new Rect();
+    private final Rect ballDirty = new Rect();
+    private final Rect lastBallDirty = new Rect();
+    // pixel geometry, rebuilt with the static layer
+    private final LevelGeometry geometry = new LevelGeometry();
+    // for prefetchLevel(), UI thread only
+    private final LevelGeometry prefetchGeometry = new LevelGeometry();
+    private volatile int surfaceWidth;
+    private volatile int surfaceHeight;
+    private final Rect pointsRect = new Rect();
+    private float pointsX, pointsY;
+    private final HudText pointsText = new HudText("");
+    private final HudText totalPointsText = new HudText("");
+    private final HudText levelText = new HudText("Level ");
+    // frames and the static layer are recorded as commands, then drawn by the backend
+    private final RenderCommands frameCommands = new RenderCommands();
+    private final RenderCommands staticCommands = new RenderCommands();
+    private final CanvasBackend backend;
+    // tile bitmaps of the static layer being built, each scaled copy gets its own id
+    private final Map<Bitmap, Integer> textureIds = new HashMap<>();
+    // debug metrics, recorded by the game thread when enabled
+    private volatile boolean metricsEnabled;
+    private volatile File metricsFile;
+    private final FrameMetrics metrics = new FrameMetrics();
+    private final TimedStepper timedStepper = new TimedStepper();
+    private long lastTickStart;
+    private long lastOverlayUpdate;
+    private char[][] overlay = new char[0][];
+    private final Paint paintDebug = new Paint();
+    private final Rect overlayRect = new Rect();
+    // set by startLevel() when the previous level was just won, start first
+    private volatile Level transitionLevel;
+    private volatile long transitionStart;
 
     // this constructor is needed if the view shall show up in an layout xml
     public GameTextureView(Context context, AttributeSet attrs) {
@@ -70,7 +143,17 @@ public class GameTextureView extends TextureView implements TextureView.SurfaceT
         paintText.setColor(Color.argb(200, 255, 255, 255));
         paintText.setTextSize(scale * 30);
         paintText.setStyle(Paint.Style.FILL);
+        paintDebug.setAntiAlias(true);
+        paintDebug.setColor(Color.YELLOW);
+        paintDebug.setTextSize(scale * 12);
+        paintDebug.setTypeface(Typeface.MONOSPACE);
         ballRect.set(0, 0, ball.getBitmap().getWidth(), ball.getBitmap().getHeight());
+        backend = new CanvasBackend(paintBitmap, paintHole, paintText, paintDebug);
+        backend.setBitmap(TEXTURE_BALL, ball.getBitmap());
+        // until the surface is there, a texture may be drawn as large as the display
+        DisplayMetrics display = getResources().getDisplayMetrics();
+        textures = new TextureCache(getResources(), context.getPackageName(), TEXTURE_CACHE_BYTES,
+                display.widthPixels, display.heightPixels);
 
         setOpaque(false);
         setSurfaceTextureListener(this);
@@ -79,123 +162,444 @@ public class GameTextureView extends TextureView implements TextureView.SurfaceT
     }
 
 
-    public void setBallPosition(Vector2 pos) {
-        ballLocation.x = pos.x * getHorizontalBaseDimension();
-        ballLocation.y = pos.y * getVerticalBaseDimension();
+    /**
+     * hands the state of the current physics step to the renderer.
+     * Must only be called from one thread at a time, normally the game loop.
+     */
+    public void publishState(Vector2 previousPosition, Vector2 ballPosition, int points) {
+        Snapshot s = snapshots.beginWrite();
+        s.previousX = previousPosition.x;
+        s.previousY = previousPosition.y;
+        s.ballX = ballPosition.x;
+        s.ballY = ballPosition.y;
+        s.swarm = false;
+        s.balls = 0;
+        s.points = points;
+        snapshots.publish();
     }
 
-    public void setHolePosition(float x, float y) {
-        holeX = x;
-        holeY = y;
+    /**
+     * like publishState() for the active balls of a swarm
+     * @param previousX positions before the step by ball index, previousY likewise
+     */
+    public void publishSwarm(BallSwarm swarm, float[] previousX, float[] previousY, int points) {
+        Snapshot s = snapshots.beginWrite();
+        int n = swarm.getActiveCount();
+        s.ensureBalls(n);
+        for(int k=0; k<n; k++) {
+            int i = swarm.getActive(k);
+            s.ballsX[k] = swarm.x[i];
+            s.ballsY[k] = swarm.y[i];
+            s.previousBallsX[k] = previousX[i];
+            s.previousBallsY[k] = previousY[i];
+        }
+        s.swarm = true;
+        s.balls = n;
+        s.ballRadius = swarm.getRadius();
+        s.points = points;
+        snapshots.publish();
     }
 
-    public void setPoints(int points) {
-        this.points = points;
+    /**
+     * attaches the physics that the game loop steps before every frame, null detaches it
+     */
+    public void setStepper(FixedStepLoop.Stepper stepper) {
+        this.stepper = stepper;
     }
 
     public void setTotalPoints(int totalPoints) {
         this.totalPoints = totalPoints;
+        staticLayerValid = false;
+    }
+
+    /**
+     * records frame, step and scheduling times on the game thread, shows them in an overlay
+     * and writes a summary to logcat and to dumpFile (if not null) whenever a level ends
+     */
+    public void setMetricsEnabled(boolean enabled, File dumpFile) {
+        metricsFile = dumpFile;
+        if(enabled) startAllocationCounting();
+        metricsEnabled = enabled;
+    }
+
+    // the deprecated Debug counters are the only per-thread allocation count down to API 14,
+    // they are meant for debugging and are left alone in release builds
+    @SuppressWarnings("deprecation")
+    private static void startAllocationCounting() {
+        if(BuildConfig.DEBUG) Debug.startAllocCounting();
+    }
+
+    /**
+     * @return objects allocated by the calling thread since counting started, 0 in release builds
+     */
+    @SuppressWarnings("deprecation")
+    private static long threadAllocations() {
+        return BuildConfig.DEBUG ? Debug.getThreadAllocCount() : 0;
     }
 
     public void setTypeface(Typeface typeface) {
         paintText.setTypeface(typeface);
     }
 
+    /**
+     * draws the static layer and the moving parts on top of it.
+     * The canvas may be clipped to the dirty rectangle of this frame.
+     */
     protected void doDraw(Canvas canvas) {
-        // clear background
-        canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+        recordFrame(frameCommands);
+        frameCommands.sort();
+        backend.begin(canvas);
+        frameCommands.replay(backend);
+        frames++;
+    }
 
-        if(level==null) return;
+    /**
+     * describes the frame as render commands, without touching a canvas
+     */
+    private void recordFrame(RenderCommands out) {
+        out.reset();
+        out.setLayer(LAYER_BACKGROUND);
+        out.clear();
 
-        // hole
-        canvas.drawCircle(holeX, holeY, calcRadius(), paintHole);
-
-        ballInHole = Math.sqrt((ballLocation.x-holeX)*(ballLocation.x-holeX) + (ballLocation.y-holeY)*(ballLocation.y-holeY)) < calcRadius();
-
-        // traps
-        hitTrap = null;
-        for(Trap t : level.getTraps()) {
-            Bitmap bitmap = findCachedBitmap(t.getTexture());
-            rect.set(0,0,bitmap.getWidth()-1, bitmap.getHeight()-1);
-            drawRect.set(t.getX()*getHorizontalBaseDimension(), t.getY()*getVerticalBaseDimension(),
-                    (t.getX()+t.getW())*getHorizontalBaseDimension()-1,
-                    (t.getY()+t.getH())*getVerticalBaseDimension()-1);
-            if(drawRect.contains(ballLocation.x,ballLocation.y)) hitTrap = t;
-            canvas.drawBitmap(bitmap, rect, drawRect, paintBitmap);
-        }
+        if(staticLevel==null) return;
+
+        out.bitmap(TEXTURE_STATIC_LAYER, 0, 0, staticLayer.getWidth(), staticLayer.getHeight(),
+                0, 0, staticLayer.getWidth(), staticLayer.getHeight());
 
         // draw ball only when round is active (points>0)
-        if(playing) {
-            drawRect.set(ballLocation.x - calcRadius(), ballLocation.y - calcRadius(), ballLocation.x + calcRadius(), ballLocation.y + calcRadius());
-            canvas.drawBitmap(ball.getBitmap(), ballRect, drawRect, paintBitmap);
+        out.setLayer(LAYER_BALLS);
+        if(playing && swarmMode) {
+            float r = swarmRadius;
+            for(int k=0; k<swarmCount; k++) {
+                out.bitmap(TEXTURE_BALL, ballRect.left, ballRect.top, ballRect.right, ballRect.bottom,
+                        swarmX[k] - r, swarmY[k] - r, swarmX[k] + r, swarmY[k] + r);
+            }
+        } else if(playing) {
+            float r = geometry.ballRadius;
+            out.bitmap(TEXTURE_BALL, ballRect.left, ballRect.top, ballRect.right, ballRect.bottom,
+                    ballLocation.x - r, ballLocation.y - r, ballLocation.x + r, ballLocation.y + r);
         }
 
         // score
-        canvas.drawText(Integer.toString(totalPoints),10*scale, 40*scale, paintText);
-        canvas.drawText(Integer.toString(points),canvas.getWidth()-100*scale,40*scale, paintText);
-        canvas.drawText("Level " + level.getNumber(), 10*scale,canvas.getHeight()-10*scale, paintText);
-        //canvas.drawText(Integer.toString(countdown),canvas.getWidth()-30*scale,canvas.getHeight()-30*scale, paintText);
-        frames++;
+        out.setLayer(LAYER_TEXT);
+        out.text(PAINT_TEXT, pointsText.getChars(), pointsText.length(), pointsX, pointsY);
+
+        if(metricsEnabled) {
+            float lineHeight = paintDebug.getTextSize()*1.2f;
+            for(int i=0; i<overlay.length; i++) {
+                out.text(PAINT_DEBUG, overlay[i], overlay[i].length, overlayRect.left, overlayRect.top + (i+1)*lineHeight);
+            }
+        }
+    }
+
+    /**
+     * renders everything that stays put during a level into an offscreen bitmap,
+     * once per level, size change or total score change
+     */
+    private void buildStaticLayer(Level level) {
+        int width = surfaceWidth, height = surfaceHeight;
+        if(geometry.update(level, width, height)) layoutTexts(width, height);
+        if(staticLayer==null || staticLayer.getWidth()!=width || staticLayer.getHeight()!=height) {
+            if(staticLayer!=null) staticLayer.recycle();
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            staticCanvas = new Canvas(staticLayer);
+            backend.setBitmap(TEXTURE_STATIC_LAYER, staticLayer);
+        }
+        RenderCommands out = staticCommands;
+        out.reset();
+        out.setLayer(LAYER_BACKGROUND);
+        out.clear();
+
+        // hole
+        out.circle(PAINT_HOLE, geometry.holeX, geometry.holeY, geometry.ballRadius);
+
+        // traps and walls, grouped by texture when sorted
+        out.setLayer(LAYER_TILES);
+        textureIds.clear();
+        for(int i=0; i<geometry.tileCount; i++) {
+            recordTile(out, geometry.tileRects[i], geometry.tileTextures[i]);
+        }
+
+        out.setLayer(LAYER_TEXT);
+        totalPointsText.set(totalPoints);
+        out.text(PAINT_TEXT, totalPointsText.getChars(), totalPointsText.length(), 10*scale, 40*scale);
+        levelText.set(level.getNumber());
+        out.text(PAINT_TEXT, levelText.getChars(), levelText.length(), 10*scale, height-10*scale);
+
+        out.sort();
+        backend.begin(staticCanvas);
+        out.replay(backend);
+        // the tiles are in the static layer now, the cache may drop them
+        backend.clearBitmaps(TEXTURE_BALL + 1);
+        if(level!=staticLevel) {
+            metrics.bitmapBytes = textures.size() + staticLayer.getByteCount() + ball.getBitmap().getByteCount();
+            Log.d(getClass().getSimpleName(), "level " + level.getNumber() + ": textures " + textures.size()/1024
+                    + " KB, all bitmaps " + metrics.bitmapBytes/1024 + " KB");
+        }
+        staticLevel = level;
+    }
+
+    /**
+     * positions of the texts drawn every frame and the areas they cover
+     */
+    private void layoutTexts(int width, int height) {
+        pointsX = width - 100*scale;
+        pointsY = 40*scale;
+        pointsRect.set(width - (int) (100*scale), 0, width, (int) (50*scale));
+        overlayRect.set(width - (int) (320*scale), height - (int) ((OVERLAY_LINES*1.2f+1)*paintDebug.getTextSize()),
+                width, height);
+    }
+
+    /**
+     * picks up the latest physics state and computes the area that changes this frame
+     * @return true if the whole surface has to be redrawn
+     */
+    private boolean prepareFrame(float alpha) {
+        Level level = this.level;
+        boolean full = false;
+        if(level==null || surfaceWidth==0) {
+            staticLevel = null;
+            return true;
+        }
+        if(!staticLayerValid || level!=staticLevel) {
+            staticLayerValid = true;
+            buildStaticLayer(level);
+            full = true;
+        }
+
+        Snapshot state = snapshots.read();
+        boolean pointsChanged = pointsText.set(state.points);
+        if(state.swarm) {
+            interpolateSwarm(state, alpha);
+        } else {
+            swarmMode = false;
+            ballLocation.x = geometry.toPixelX(state.previousX + (state.ballX-state.previousX)*alpha);
+            ballLocation.y = geometry.toPixelY(state.previousY + (state.ballY-state.previousY)*alpha);
+            // plus a pixel for anti aliasing
+            int r = (int) geometry.ballRadius + 2;
+            ballDirty.set((int) ballLocation.x - r, (int) ballLocation.y - r, (int) ballLocation.x + r, (int) ballLocation.y + r);
+        }
+
+        // old and new balls
+        dirty.set(ballDirty);
+        dirty.union(lastBallDirty);
+        lastBallDirty.set(ballDirty);
+        // points, only when they changed
+        if(pointsChanged) dirty.union(pointsRect);
+        if(metricsEnabled) dirty.union(overlayRect);
+        return full;
+    }
+
+    /**
+     * pixel positions of the swarm in this frame, ballDirty becomes the box around all of them
+     */
+    private void interpolateSwarm(Snapshot state, float alpha) {
+        int n = state.balls;
+        if(swarmX.length<n) {
+            swarmX = new float[n];
+            swarmY = new float[n];
+        }
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for(int k=0; k<n; k++) {
+            float x = geometry.toPixelX(state.previousBallsX[k] + (state.ballsX[k]-state.previousBallsX[k])*alpha);
+            float y = geometry.toPixelY(state.previousBallsY[k] + (state.ballsY[k]-state.previousBallsY[k])*alpha);
+            swarmX[k] = x;
+            swarmY[k] = y;
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        swarmMode = true;
+        swarmCount = n;
+        swarmRadius = geometry.toPixelX(state.ballRadius);
+        int r = (int) swarmRadius + 2;
+        if(n==0) {
+            ballDirty.setEmpty();
+        } else {
+            ballDirty.set((int) left - r, (int) top - r, (int) right + r, (int) bottom + r);
+        }
     }
 
-    private float calcRadius() {
-        return SIZE * scale / 2;
+    /**
+     * draws the texture scaled to the tile size by the cache, at whole pixels so it is copied 1:1
+     */
+    private void recordTile(RenderCommands out, RectF target, String texture) {
+        int left = Math.round(target.left);
+        int top = Math.round(target.top);
+        int width = LevelGeometry.pixelWidth(target);
+        int height = LevelGeometry.pixelHeight(target);
+        Bitmap bitmap = textures.get(texture, width, height);
+        if(bitmap==null) return;
+        Integer id = textureIds.get(bitmap);
+        if(id==null) {
+            id = TEXTURE_BALL + 1 + textureIds.size();
+            textureIds.put(bitmap, id);
+        }
+        backend.setBitmap(id, bitmap);
+        out.bitmap(id, 0, 0, bitmap.getWidth(), bitmap.getHeight(), left, top, left + width, top + height);
+    }
+
+    /**
+     * starts decoding the given textures in the background
+     */
+    public void preloadTextures(Collection<String> names) {
+        textures.preload(names);
+    }
+
+    /**
+     * stops decoding in the background and frees the textures, for when the activity is destroyed
+     */
+    public void release() {
+        textures.release();
     }
 
-    private Bitmap findCachedBitmap(String texture) {
-        Bitmap b = bitmaps.get(texture);
-        if(b!=null) return  b;
-        BitmapDrawable bd = (BitmapDrawable) getResources().getDrawable(getResources().getIdentifier(texture, "drawable", getContext().getPackageName()));
-        if(bd!=null) {
-            bitmaps.put(texture,bd.getBitmap());
-            return bd.getBitmap();
+    /**
+     * scales the textures of a level that comes next to its tile sizes in the background,
+     * so starting it only draws. Needs the surface size, does nothing before.
+     */
+    public void prefetchLevel(Level level) {
+        int width = surfaceWidth, height = surfaceHeight;
+        if(width==0 || height==0) return;
+        prefetchGeometry.update(level, width, height);
+        for(int i=0; i<prefetchGeometry.tileCount; i++) {
+            RectF r = prefetchGeometry.tileRects[i];
+            textures.preload(prefetchGeometry.tileTextures[i], LevelGeometry.pixelWidth(r), LevelGeometry.pixelHeight(r));
         }
-        else Log.e("GameView", "texture not found: " + texture);
-        return null;
     }
 
 
-    public int getFps() {
+    public float getFps() {
         long delta = System.currentTimeMillis() - t;
         if(delta<1000) return 0;
-        return (int) (frames/(delta /1000));
+        return frames*1000f/delta;
     }
 
-    private float getHorizontalBaseDimension() {
-        return getWidth()/16;
+    /**
+     * one pass of the game loop: the physics steps that are due, then one frame
+     */
+    private void tick() {
+        long start = System.nanoTime();
+        boolean measure = metricsEnabled;
+        FixedStepLoop.Stepper s = stepper;
+        // the same stepper may play the next level without this thread seeing it detached in between
+        Level l = level;
+        if(s!=activeStepper || l!=activeLevel) {
+            if(activeStepper!=null && measure) dumpMetrics();
+            // no catch up for the time before the level started
+            loop.reset();
+            activeStepper = s;
+            activeLevel = l;
+        }
+        long allocations = 0;
+        if(measure) {
+            allocations = threadAllocations();
+            if(lastTickStart!=0) metrics.lateness.record(start - lastTickStart - TICK_INTERVAL_NANOS);
+        }
+        lastTickStart = start;
+
+        float alpha = 1;
+        if(s!=null) {
+            if(measure) {
+                timedStepper.target = s;
+                loop.advance(timedStepper);
+            } else {
+                loop.advance(s);
+            }
+            alpha = loop.getAlpha();
+        }
+
+        if(measure) {
+            long renderStart = System.nanoTime();
+            render(alpha);
+            metrics.frameTime.record(System.nanoTime() - renderStart);
+            metrics.allocations.record(threadAllocations() - allocations);
+            if(start - lastOverlayUpdate > OVERLAY_UPDATE_NANOS) {
+                String[] lines = metrics.summary().split("\n");
+                char[][] chars = new char[lines.length][];
+                for(int i=0; i<lines.length; i++) chars[i] = lines[i].toCharArray();
+                overlay = chars;
+                lastOverlayUpdate = start;
+            }
+        } else {
+            render(alpha);
+        }
+
+        long transition = transitionStart;
+        if(transition!=0 && staticLevel==transitionLevel) {
+            transitionStart = 0;
+            long nanos = System.nanoTime() - transition;
+            if(measure) metrics.transition.record(nanos);
+            Log.d(getClass().getSimpleName(), "level " + staticLevel.getNumber() + " drawn " + nanos/1000 + " us after the last one was won");
+        }
     }
 
-    private float getVerticalBaseDimension() {
-        return getHeight()/9;
+    private void dumpMetrics() {
+        String summary = metrics.summary();
+        Log.i(getClass().getSimpleName(), "level metrics\n" + summary);
+        File file = metricsFile;
+        if(file!=null) {
+            try(Writer out = new FileWriter(file, true)) {
+                out.write("level ended at " + System.currentTimeMillis() + "\n");
+                out.write(summary);
+                out.write("\n\n");
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "writing metrics failed", e);
+            }
+        }
+        metrics.reset();
     }
 
-    private void render() {
+    /**
+     * wraps the stepper of the current level to time each physics step
+     */
+    private class TimedStepper implements FixedStepLoop.Stepper {
+        FixedStepLoop.Stepper target;
+
+        @Override
+        public boolean step(long time) {
+            long t0 = System.nanoTime();
+            boolean more = target.step(time);
+            metrics.stepTime.record(System.nanoTime() - t0);
+            return more;
+        }
+    }
+
+    private void render(float alpha) {
         Canvas canvas=null;
         try {
-            canvas = lockCanvas();
-            doDraw(canvas);
+            canvas = prepareFrame(alpha) ? lockCanvas() : lockCanvas(dirty);
+            if(canvas!=null) doDraw(canvas);
         }
         finally {
-            unlockCanvasAndPost(canvas);
+            if(canvas!=null) unlockCanvasAndPost(canvas);
         }
     }
 
     @Override
     public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
-        executorService = Executors.newSingleThreadScheduledExecutor();
+        surfaceWidth = width;
+        surfaceHeight = height;
+        textures.setMaxSize(width, height);
+        staticLayerValid = false;
         t= System.currentTimeMillis();
-        executorService.scheduleAtFixedRate(this::render, FRAME_INTERVAL, FRAME_INTERVAL, TimeUnit.MILLISECONDS);
+        ticking = executorService.scheduleAtFixedRate(this::tick, TICK_INTERVAL_NANOS, TICK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
         Log.d(getClass().getSimpleName(), "onSurfaceTextureAvailable");
     }
 
     @Override
     public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
-
+        surfaceWidth = width;
+        surfaceHeight = height;
+        textures.setMaxSize(width, height);
+        // geometry and static layer follow on the next frame, drawn in full
+        staticLayerValid = false;
     }
 
     @Override
     public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
-        executorService.shutdown();
+        if(ticking!=null) ticking.cancel(false);
+        ticking = null;
         Log.d(getClass().getSimpleName(), "onSurfaceTextureDestroyed");
         return true;
     }
@@ -205,57 +609,39 @@ public class GameTextureView extends TextureView implements TextureView.SurfaceT
 
     }
 
-    public void startLevel(Level level) {
-        this.level = level;
-        setHolePosition(level.getHole().getX() * getHorizontalBaseDimension(), level.getHole().getY() * getVerticalBaseDimension());
-        playfield = new RectF(calcRadius(), calcRadius(), getWidth()- calcRadius(), getHeight()- calcRadius());
-        playing=true;
-    }
-
-    public RectF getPlayfield() {
-        return playfield;
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if(executorService==null || executorService.isShutdown()) {
+            executorService = Executors.newSingleThreadScheduledExecutor();
+        }
     }
 
-    public Trap getHitTrap() {
-        return  hitTrap;
+    @Override
+    protected void onDetachedFromWindow() {
+        // destroys the surface, which stops ticking
+        super.onDetachedFromWindow();
+        executorService.shutdown();
     }
 
-    public boolean isBallInHole() {
-        return ballInHole;
+    /**
+     * @param previousEnd System.nanoTime() when the level before was won, 0 if the player did not
+     *                    go straight on from one. The time until this level is drawn is logged.
+     */
+    public void startLevel(Level level, long previousEnd) {
+        if(previousEnd!=0) {
+            transitionLevel = level;
+            transitionStart = previousEnd;
+        }
+        this.level = level;
+        // in case the budget evicted some, they are needed first. Scaled right away, so no
+        // source is decoded for textures whose tiles are cached already.
+        prefetchLevel(level);
+        staticLayerValid = false;
+        playing=true;
     }
 
     public void setPlaying(boolean playing) {
         this.playing = playing;
     }
-
-    public Matrix2 getBounceMatrix() {
-        return bounceMatrix;
-    }
-
-    public boolean checkBounce() {
-        boolean res=false;
-        bounceMatrix.unity();
-        // check playfield bounds and bounce
-        if (ballLocation.x < getPlayfield().left) {
-            ballLocation.x = getPlayfield().left;
-            bounceMatrix.xx=-BOUNCE_FACTOR;
-            res=true;
-        }
-        if (ballLocation.y < getPlayfield().top) {
-            ballLocation.y = getPlayfield().top;
-            bounceMatrix.yy=-BOUNCE_FACTOR;
-            res=true;
-        }
-        if (ballLocation.x > getPlayfield().right) {
-            ballLocation.x = getPlayfield().right;
-            bounceMatrix.xx=-BOUNCE_FACTOR;
-            res=true;
-        }
-        if (ballLocation.y > getPlayfield().bottom) {
-            ballLocation.y = getPlayfield().bottom;
-            bounceMatrix.yy=-BOUNCE_FACTOR;
-            res=true;
-        }
-        return res;
-    }
 }
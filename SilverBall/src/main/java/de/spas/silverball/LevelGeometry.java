@@ -0,0 +1,89 @@
+package de.spas.silverball;
+
+import android.graphics.RectF;
+
+import java.util.List;
+
+import de.spas.silverball.model.GridRect;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.Obstacle;
+import de.spas.silverball.model.Trap;
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * Pixel positions of a level on a surface of a given size. Computed when the level or
+ * the size changes, so drawing a frame needs no layout math.
+ */
+class LevelGeometry {
+
+    float cellWidth;
+    float cellHeight;
+    float ballRadius;
+    float holeX;
+    float holeY;
+    // traps first, then walls, in drawing order
+    int tileCount;
+    RectF[] tileRects = new RectF[0];
+    String[] tileTextures = new String[0];
+    private Level level;
+    private int width;
+    private int height;
+
+    /**
+     * @return true if something changed
+     */
+    boolean update(Level level, int width, int height) {
+        if(level==this.level && width==this.width && height==this.height) return false;
+        this.level = level;
+        this.width = width;
+        this.height = height;
+        cellWidth = width / Simulation.FIELD_WIDTH;
+        cellHeight = height / Simulation.FIELD_HEIGHT;
+        ballRadius = Simulation.BALL_RADIUS * cellWidth;
+        holeX = toPixelX(level.getHole().getX());
+        holeY = toPixelY(level.getHole().getY());
+
+        List<Trap> traps = level.getTraps();
+        List<Obstacle> obstacles = level.getObstacles();
+        ensureTiles(traps.size() + obstacles.size());
+        tileCount = 0;
+        for(Trap t : traps) addTile(t, t.getTexture());
+        for(Obstacle o : obstacles) addTile(o, o.getTexture());
+        return true;
+    }
+
+    float toPixelX(float x) {
+        return x * cellWidth;
+    }
+
+    float toPixelY(float y) {
+        return y * cellHeight;
+    }
+
+    /**
+     * whole pixels a tile covers when drawn at its rounded position
+     */
+    static int pixelWidth(RectF tile) {
+        return Math.round(tile.right) - Math.round(tile.left);
+    }
+
+    static int pixelHeight(RectF tile) {
+        return Math.round(tile.bottom) - Math.round(tile.top);
+    }
+
+    private void ensureTiles(int count) {
+        if(tileRects.length>=count) return;
+        RectF[] rects = new RectF[count];
+        System.arraycopy(tileRects, 0, rects, 0, tileRects.length);
+        for(int i=tileRects.length; i<count; i++) rects[i] = new RectF();
+        tileRects = rects;
+        tileTextures = new String[count];
+    }
+
+    private void addTile(GridRect r, String texture) {
+        tileRects[tileCount].set(toPixelX(r.getX()), toPixelY(r.getY()),
+                toPixelX(r.getX() + r.getW()) - 1, toPixelY(r.getY() + r.getH()) - 1);
+        tileTextures[tileCount] = texture;
+        tileCount++;
+    }
+}
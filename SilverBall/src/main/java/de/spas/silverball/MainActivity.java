@@ -1,6 +1,7 @@
 package de.spas.silverball;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.graphics.LinearGradient;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
@@ -15,25 +16,36 @@ import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.TextView;
 
-import com.google.gson.Gson;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
-import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.io.BinaryLevelPack;
+import de.spas.silverball.io.JsonLevelIndex;
+import de.spas.silverball.io.LevelSource;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.scores.ScoreRecord;
+import de.spas.silverball.scores.ScoreStore;
 import de.spas.tools.BaseGameActivity;
 import de.spas.tools.SimpleAnimationListener;
+import de.spas.tools.SoundService;
 
 public class MainActivity extends BaseGameActivity implements  GameEngine.OnGameEventListener {
 
     private final static String FONTNAME="airmole";
+    private final static int MAX_VOICES = 4;
     private GameTextureView gameView;
     private GameEngine gameEngine;
-    private LevelPack levelPack;
+    private LevelSource levels;
     private int level;
     private int highscore;
     private AudioManager audioManager;
+    private SoundService sounds;
     private int currentScore;
+    // steps of all levels won in this game
+    private long runSteps;
+    // null until read in the background
+    private volatile ScoreStore scores;
 
 
     @Override
@@ -47,9 +59,11 @@ public class MainActivity extends BaseGameActivity implements  GameEngine.OnGame
                 0, 0, 0, scale(16),
                 getResources().getColor(R.color.silver1), getResources().getColor(R.color.silver2),
                 Shader.TileMode.MIRROR));
-        applyTypeface(findViewById(R.id.start), FONTNAME);
-        findViewById(R.id.start).setLayerType(View.LAYER_TYPE_SOFTWARE, null); // nice effects need software rendering
-        ((TextView) findViewById(R.id.start)).getPaint().setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        for(int id : new int[]{R.id.start, R.id.swarm}) {
+            applyTypeface(findViewById(id), FONTNAME);
+            findViewById(id).setLayerType(View.LAYER_TYPE_SOFTWARE, null); // nice effects need software rendering
+            ((TextView) findViewById(id)).getPaint().setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        }
         applyTypeface( findViewById(R.id.title), FONTNAME);
         applyTypeface( findViewById(R.id.title_back), FONTNAME);
         applyShader( findViewById(R.id.title_back), "silver");
@@ -57,66 +71,156 @@ public class MainActivity extends BaseGameActivity implements  GameEngine.OnGame
         applyTypeface( findViewById(R.id.highscore), FONTNAME);
         applyShader( findViewById(R.id.highscore), "silver");
         applyEmboss( findViewById(R.id.highscore), new float[]{0f, scale(1f), scale(0.5f)}, 0.8f, 3f, scale(3f));
-        findViewById(R.id.start).setOnClickListener(this::clickedStart);
+        findViewById(R.id.start).setOnClickListener(view -> clickedStart(view, false));
+        findViewById(R.id.swarm).setOnClickListener(view -> clickedStart(view, true));
 
         gameView = findViewById(R.id.gameview);
         gameView.setTypeface(getTypeface(FONTNAME));
+        if(BuildConfig.DEBUG) {
+            File dir = getExternalFilesDir(null);
+            gameView.setMetricsEnabled(true, new File(dir!=null ? dir : getFilesDir(), "metrics.txt"));
+        }
 
         audioManager = (AudioManager)getSystemService(Context.AUDIO_SERVICE);
 
-        // load levelpack
+        // sounds are shared by all levels
+        sounds = new SoundService(MAX_VOICES);
+        sounds.load(this, R.raw.success);
+        sounds.load(this, R.raw.lava);
+        sounds.load(this, R.raw.hit);
+
+        // one engine for all levels
+        gameEngine = new GameEngine(sounds, (SensorManager)getSystemService(Context.SENSOR_SERVICE), gameView, this);
+        gameEngine.setReplayDir(new File(getFilesDir(), "replays"));
+
+        // index levelpack in the background, start is possible once it is done
+        findViewById(R.id.start).setEnabled(false);
+        findViewById(R.id.swarm).setEnabled(false);
+        new Thread(this::loadLevels, "LevelIndex").start();
+
+        showMenu();
+
+    }
+
+    private void loadLevels() {
         try {
-            InputStream source = getAssets().open("levels.json");
-            Gson gson = new Gson();
-            levelPack = gson.fromJson(new InputStreamReader(source),LevelPack.class);
+            LevelSource index = openLevels();
+            openScores();
+            runOnUiThread(() -> {
+                levels = index;
+                gameView.preloadTextures(index.getTextures());
+                findViewById(R.id.start).setEnabled(true);
+                findViewById(R.id.swarm).setEnabled(true);
+            });
         } catch (Exception e) {
             Log.e(getClass().getSimpleName(), "loading levels threw exception", e);
         }
+    }
 
-        showMenu();
+    /**
+     * reads the saved highscores, a broken file costs the scores but not the game
+     */
+    private void openScores() {
+        try {
+            ScoreStore store = ScoreStore.open(new File(getFilesDir(), "scores.log"),
+                    e -> Log.e(getClass().getSimpleName(), "saving scores threw exception", e));
+            scores = store;
+            runOnUiThread(() -> {
+                highscore = Math.max(highscore, store.getHighscore());
+                setText(R.id.highscore, getString(R.string.highscore) + " " + Integer.toString(highscore));
+            });
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "reading scores threw exception", e);
+        }
+    }
 
+    /**
+     * maps the levels.bin compiled at build time, falls back to indexing levels.json
+     */
+    private LevelSource openLevels() throws IOException {
+        try {
+            AssetFileDescriptor fd = getAssets().openFd("levels.bin");
+            // closing the stream closes the descriptor as well, the mapping stays
+            try(FileInputStream in = fd.createInputStream()) {
+                return BinaryLevelPack.map(in.getChannel(), fd.getStartOffset(), fd.getLength());
+            }
+        } catch (IOException e) {
+            Log.w(getClass().getSimpleName(), "no compiled levels, using levels.json", e);
+            return JsonLevelIndex.build(() -> getAssets().open("levels.json"));
+        }
     }
 
-    private void clickedStart(View view) {
+    private void clickedStart(View view, boolean swarm) {
         Animation a = AnimationUtils.loadAnimation(this,R.anim.buttonpress);
         a.setAnimationListener(new SimpleAnimationListener() {
             @Override
             public void onAnimationEnd(Animation animation) {
-                startGame();
+                startGame(swarm);
             }
         });
         view.startAnimation(a);
     }
 
-    private void startGame() {
+    /**
+     * @param swarm plays all levels with a swarm of balls, see GameEngine
+     */
+    private void startGame(boolean swarm) {
         hideView(R.id.menu);
+        gameEngine.setSwarmMode(swarm);
         level=0;
+        currentScore=0;
+        runSteps=0;
         gameView.setTotalPoints(0);
         startLevel();
     }
 
     private void startLevel() {
-        gameEngine = new GameEngine(this, (SensorManager)getSystemService(Context.SENSOR_SERVICE),gameView,this,  levelPack.getLevels().get(level));
-        gameEngine.start();
+        try {
+            gameEngine.loadLevel(levels.getLevel(level));
+            // the one after is likely next, its tiles are scaled while this one is played
+            if(level+1 < levels.getLevelCount()) gameView.prefetchLevel(levels.getLevel(level+1));
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "loading level " + level + " threw exception", e);
+            onGameOver();
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if(gameEngine!=null) gameEngine.stop();
+        gameEngine.pause();
+        if(scores!=null) scores.flush();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        gameEngine.release();
+        gameView.release();
+        sounds.release();
+        if(scores!=null) scores.close();
+    }
+
+    // the engine calls these on the game thread, the game state is only touched on the UI thread
     @Override
     public void onBallInHole(int score) {
-        currentScore += score;
-        runOnUiThread(this::nextLevel);
+        long steps = gameEngine.getSteps();
+        int number = gameEngine.getLevel().getNumber();
+        boolean ranked = !gameEngine.isSwarmMode();
+        runOnUiThread(() -> {
+            currentScore += score;
+            runSteps += steps;
+            // only queued here, the file is written in the background. Swarm games are not ranked.
+            if(scores!=null && ranked) scores.record(ScoreRecord.level(number, score, (int) steps, System.currentTimeMillis()));
+            nextLevel();
+        });
     }
 
     public void nextLevel() {
         gameView.setTotalPoints(currentScore);
         gameView.invalidate();
         level++;
-        if(levelPack.getLevels().size() > level) {
+        if(levels.getLevelCount() > level) {
             startLevel();
         } else {
             onGameOver();
@@ -125,8 +229,15 @@ public class MainActivity extends BaseGameActivity implements  GameEngine.OnGame
 
     @Override
     public void onGameOver() {
-        if(currentScore >highscore) highscore= currentScore;
-        runOnUiThread(this::showMenu);
+        gameEngine.pause();
+        boolean ranked = !gameEngine.isSwarmMode();
+        runOnUiThread(() -> {
+            if(ranked) {
+                if(currentScore >highscore) highscore= currentScore;
+                if(scores!=null) scores.record(ScoreRecord.game(level, currentScore, (int) runSteps, System.currentTimeMillis()));
+            }
+            showMenu();
+        });
     }
 
     public void showMenu() {
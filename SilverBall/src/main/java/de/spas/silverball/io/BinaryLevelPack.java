@@ -0,0 +1,147 @@
+package de.spas.silverball.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.spas.silverball.model.Ball;
+import de.spas.silverball.model.Hole;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.Obstacle;
+import de.spas.silverball.model.Trap;
+
+/**
+ * Level pack in the binary format written by LevelCompiler (buildSrc), the layout is documented there.
+ * Only the header and the string tables are decoded up front, levels are read
+ * straight from the buffer with absolute gets when requested, so the buffer
+ * may be a memory mapped file and is safe to share between threads.
+ */
+public class BinaryLevelPack implements LevelSource {
+
+    public static final int MAGIC = 0x53424C56; // "SBLV"
+    public static final int VERSION = 2;
+    // the shape byte of a trap is its index here
+    static final String[] TRAP_SHAPES = {Trap.SHAPE_RECT, Trap.SHAPE_CIRCLE, Trap.SHAPE_POLYGON};
+    // polygon points are stored in 1/POINT_SCALE cells
+    static final float POINT_SCALE = 256;
+
+    private final ByteBuffer buffer;
+    private final String name;
+    private final String[] textures;
+    private final String[] types;
+    private final int count;
+    private final int offsetTable;
+
+    public BinaryLevelPack(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int pos = 0;
+        if(buffer.getInt(pos)!=MAGIC) throw new IOException("not a level pack");
+        pos += 4;
+        int version = buffer.getShort(pos);
+        if(version!=VERSION) throw new IOException("unsupported level pack version " + version);
+        pos += 2;
+        name = readString(pos);
+        pos += 2 + unsignedShort(pos);
+        textures = new String[unsignedShort(pos)];
+        pos = readStrings(pos+2, textures);
+        types = new String[unsignedShort(pos)];
+        pos = readStrings(pos+2, types);
+        count = buffer.getInt(pos);
+        offsetTable = pos+4;
+    }
+
+    /**
+     * maps a region of a file, e.g. an uncompressed asset from AssetFileDescriptor.
+     * The mapping stays valid after the channel is closed.
+     */
+    public static BinaryLevelPack map(FileChannel channel, long offset, long length) throws IOException {
+        return new BinaryLevelPack(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLevelCount() {
+        return count;
+    }
+
+    @Override
+    public Set<String> getTextures() {
+        return new LinkedHashSet<>(Arrays.asList(textures));
+    }
+
+    @Override
+    public Level getLevel(int index) {
+        if(index<0 || index>=count) throw new IndexOutOfBoundsException("level " + index + " of " + count);
+        ByteBuffer b = buffer;
+        int pos = b.getInt(offsetTable + 4*index);
+        int number = b.getInt(pos);
+        int points = b.getInt(pos+4);
+        int time = b.getInt(pos+8);
+        Ball ball = new Ball(b.get(pos+12), b.get(pos+13));
+        Hole hole = new Hole(b.get(pos+14), b.get(pos+15));
+        pos += 16;
+
+        int trapCount = unsignedShort(pos);
+        pos += 2;
+        List<Trap> traps = new ArrayList<>(trapCount);
+        for(int i=0; i<trapCount; i++) {
+            String texture = textures[unsignedShort(pos)];
+            int x = b.get(pos+2), y = b.get(pos+3), w = b.get(pos+4), h = b.get(pos+5);
+            String shape = TRAP_SHAPES[b.get(pos+6)];
+            pos += 7;
+            if(Trap.SHAPE_RECT.equals(shape)) {
+                traps.add(new Trap(texture, x, y, w, h));
+                continue;
+            }
+            float[] corners = null;
+            if(Trap.SHAPE_POLYGON.equals(shape)) {
+                corners = new float[2*(b.get(pos) & 0xff)];
+                pos++;
+                for(int p=0; p<corners.length; p++, pos+=2) corners[p] = b.getShort(pos) / POINT_SCALE;
+            }
+            traps.add(new Trap(texture, x, y, w, h, shape, corners));
+        }
+
+        int obstacleCount = unsignedShort(pos);
+        pos += 2;
+        List<Obstacle> obstacles = obstacleCount==0 ? Collections.emptyList() : new ArrayList<>(obstacleCount);
+        for(int i=0; i<obstacleCount; i++, pos+=8) {
+            int type = b.getShort(pos);
+            obstacles.add(new Obstacle(type>=0 ? types[type] : null, textures[unsignedShort(pos+2)],
+                    b.get(pos+4), b.get(pos+5), b.get(pos+6), b.get(pos+7)));
+        }
+        return new Level(number, ball, hole, points, time, traps, obstacles);
+    }
+
+    private int readStrings(int pos, String[] out) {
+        for(int i=0; i<out.length; i++) {
+            out[i] = readString(pos);
+            pos += 2 + unsignedShort(pos);
+        }
+        return pos;
+    }
+
+    /**
+     * counts, lengths and texture indices are unsigned
+     */
+    private int unsignedShort(int pos) {
+        return buffer.getShort(pos) & 0xffff;
+    }
+
+    private String readString(int pos) {
+        byte[] bytes = new byte[unsignedShort(pos)];
+        for(int i=0; i<bytes.length; i++) bytes[i] = buffer.get(pos+2+i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
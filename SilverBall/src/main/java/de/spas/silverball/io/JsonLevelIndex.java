@@ -0,0 +1,167 @@
+package de.spas.silverball.io;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import de.spas.silverball.model.Level;
+
+/**
+ * Level pack in the levels.json format, indexed in a single streaming pass.
+ * The index only keeps the byte range of every level and the texture names,
+ * a Level is parsed when it is requested. The last requested level is kept.
+ */
+public class JsonLevelIndex implements LevelSource {
+
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private final Opener opener;
+    private final Gson gson = new Gson();
+    private final Set<String> textures = new LinkedHashSet<>();
+    private String name;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+    private int cachedIndex = -1;
+    private Level cached;
+
+    private JsonLevelIndex(Opener opener) {
+        this.opener = opener;
+    }
+
+    /**
+     * reads the whole pack once, call this off the UI thread
+     */
+    public static JsonLevelIndex build(Opener opener) throws IOException {
+        JsonLevelIndex index = new JsonLevelIndex(opener);
+        try(InputStream in = opener.open()) {
+            index.scan(in);
+        }
+        return index;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLevelCount() {
+        return count;
+    }
+
+    @Override
+    public Set<String> getTextures() {
+        return textures;
+    }
+
+    @Override
+    public synchronized Level getLevel(int index) throws IOException {
+        if(index<0 || index>=count) throw new IndexOutOfBoundsException("level " + index + " of " + count);
+        if(index==cachedIndex) return cached;
+        byte[] json = new byte[ends[index]-starts[index]];
+        try(InputStream in = opener.open()) {
+            long skip = starts[index];
+            while(skip>0) {
+                long n = in.skip(skip);
+                if(n<=0) throw new IOException("level pack is shorter than its index");
+                skip -= n;
+            }
+            int read = 0;
+            while(read<json.length) {
+                int n = in.read(json, read, json.length-read);
+                if(n<0) throw new IOException("level pack is shorter than its index");
+                read += n;
+            }
+        }
+        cached = gson.fromJson(new String(json, StandardCharsets.UTF_8), Level.class);
+        cachedIndex = index;
+        return cached;
+    }
+
+    /**
+     * Minimal JSON tokenizer: tracks nesting and strings, records where each object
+     * of the top level "levels" array starts and ends and picks up pack name and texture names.
+     * Works on bytes, the ranges are byte offsets and strings are decoded as UTF-8 when they end.
+     */
+    private void scan(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        // raw UTF-8 bytes of the current string, escapes included
+        byte[] string = new byte[64];
+        int length = 0;
+        boolean inString = false, escape = false, escaped = false, afterColon = false;
+        String lastString = null, key = null;
+        int depth = 0, levelsDepth = -1;
+        int pos = 0, n;
+        while((n = in.read(buffer))>0) {
+            for(int i=0; i<n; i++, pos++) {
+                // multi-byte UTF-8 sequences never contain ASCII bytes, so they cannot end a string or a token
+                char c = (char) (buffer[i] & 0xff);
+                if(inString) {
+                    if(!escape && c=='"') {
+                        inString = false;
+                        lastString = escaped
+                                ? gson.fromJson('"' + new String(string, 0, length, StandardCharsets.UTF_8) + '"', String.class)
+                                : new String(string, 0, length, StandardCharsets.UTF_8);
+                        if(afterColon) {
+                            if("texture".equals(key)) textures.add(lastString);
+                            if("name".equals(key) && depth==1) name = lastString;
+                        }
+                    } else {
+                        escape = !escape && c=='\\';
+                        if(escape) escaped = true;
+                        if(length==string.length) string = Arrays.copyOf(string, length*2);
+                        string[length++] = buffer[i];
+                    }
+                    continue;
+                }
+                switch(c) {
+                    case '"':
+                        inString = true;
+                        escaped = false;
+                        length = 0;
+                        break;
+                    case ':':
+                        key = lastString;
+                        afterColon = true;
+                        break;
+                    case ',':
+                        afterColon = false;
+                        break;
+                    case '[':
+                        if(depth==1 && afterColon && "levels".equals(key)) levelsDepth = depth+1;
+                        depth++;
+                        afterColon = false;
+                        break;
+                    case '{':
+                        if(depth==levelsDepth) addStart(pos);
+                        depth++;
+                        afterColon = false;
+                        break;
+                    case ']':
+                    case '}':
+                        depth--;
+                        if(c=='}' && depth==levelsDepth) ends[count-1] = pos+1;
+                        if(c==']' && depth+1==levelsDepth) levelsDepth = -1;
+                        afterColon = false;
+                        break;
+                }
+            }
+        }
+    }
+
+    private void addStart(int pos) {
+        if(count==starts.length) {
+            starts = Arrays.copyOf(starts, count*2);
+            ends = Arrays.copyOf(ends, count*2);
+        }
+        starts[count++] = pos;
+    }
+}
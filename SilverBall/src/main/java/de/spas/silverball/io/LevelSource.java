@@ -0,0 +1,26 @@
+package de.spas.silverball.io;
+
+import java.io.IOException;
+import java.util.Set;
+
+import de.spas.silverball.model.Level;
+
+/**
+ * A level pack whose levels are created on demand.
+ */
+public interface LevelSource {
+
+    String getName();
+
+    int getLevelCount();
+
+    /**
+     * @param index position in the pack, starting at 0
+     */
+    Level getLevel(int index) throws IOException;
+
+    /**
+     * @return names of all textures used in the pack, without loading the levels
+     */
+    Set<String> getTextures();
+}
@@ -0,0 +1,51 @@
+package de.spas.silverball.metrics;
+
+import java.util.Locale;
+
+/**
+ * Timings of the game loop, recorded per tick by the game thread.
+ */
+public class FrameMetrics {
+
+    /** time spent drawing one frame, ns */
+    public final Histogram frameTime = new Histogram();
+    /** time of one physics step, ns */
+    public final Histogram stepTime = new Histogram();
+    /** how much later than planned a tick started, ns */
+    public final Histogram lateness = new Histogram();
+    /** objects allocated by the game thread during one tick */
+    public final Histogram allocations = new Histogram();
+    /** from winning a level to the first frame of the next one, ns */
+    public final Histogram transition = new Histogram();
+    /** bytes of all bitmaps of the current level, set when it is first drawn, kept by reset() */
+    public volatile long bitmapBytes;
+
+    public void reset() {
+        frameTime.reset();
+        stepTime.reset();
+        lateness.reset();
+        allocations.reset();
+        transition.reset();
+    }
+
+    /**
+     * @return one line per histogram with p50/p95/p99/max, times in ms, then the bitmap memory
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        appendTime(sb, "frame", frameTime);
+        appendTime(sb, "step", stepTime);
+        appendTime(sb, "late", lateness);
+        appendTime(sb, "next", transition);
+        Histogram a = allocations;
+        sb.append(String.format(Locale.US, "alloc p50 %d p95 %d p99 %d max %d (%d)%n",
+                a.percentile(0.5), a.percentile(0.95), a.percentile(0.99), a.getMax(), a.getCount()));
+        sb.append(String.format(Locale.US, "bitmaps %d KB", bitmapBytes/1024));
+        return sb.toString();
+    }
+
+    private static void appendTime(StringBuilder sb, String name, Histogram h) {
+        sb.append(String.format(Locale.US, "%s p50 %.2f p95 %.2f p99 %.2f max %.2f ms (%d)%n", name,
+                h.percentile(0.5)/1e6, h.percentile(0.95)/1e6, h.percentile(0.99)/1e6, h.getMax()/1e6, h.getCount()));
+    }
+}
@@ -0,0 +1,76 @@
+package de.spas.silverball.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size histogram of non-negative long values, e.g. nanoseconds.
+ * Buckets are exact below 16 and split every power of two into 16 steps above,
+ * so percentiles are accurate to about 6%. Recording does not allocate and is not thread safe.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+
+    private final long[] counts = new long[(64-SUB_BITS+1)*SUB_BUCKETS];
+    private long count;
+    private long max;
+    private long sum;
+
+    public void record(long value) {
+        if(value<0) value = 0;
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if(value>max) max = value;
+    }
+
+    /**
+     * @param p fraction between 0 and 1, e.g. 0.99
+     * @return upper bound of the bucket holding that percentile, 0 if empty
+     */
+    public long percentile(double p) {
+        if(count==0) return 0;
+        long rank = (long) Math.ceil(p*count);
+        if(rank<1) rank = 1;
+        long seen = 0;
+        for(int i=0; i<counts.length; i++) {
+            seen += counts[i];
+            if(seen>=rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count==0 ? 0 : (double) sum/count;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    private static int index(long v) {
+        if(v<SUB_BUCKETS) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exp - SUB_BITS;
+        return (shift+1)*SUB_BUCKETS + (int) ((v>>>shift) & (SUB_BUCKETS-1));
+    }
+
+    private static long upperBound(int index) {
+        if(index<SUB_BUCKETS) return index;
+        int shift = index/SUB_BUCKETS - 1;
+        long base = (long) (SUB_BUCKETS + index%SUB_BUCKETS) << shift;
+        return base + (1L<<shift) - 1;
+    }
+}
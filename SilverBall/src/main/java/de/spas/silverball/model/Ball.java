@@ -8,6 +8,15 @@ public class Ball {
     private int startx;
     private int starty;
 
+    // used by Gson
+    public Ball() {
+    }
+
+    public Ball(int startx, int starty) {
+        this.startx = startx;
+        this.starty = starty;
+    }
+
     public int getStartx() {
         return startx;
     }
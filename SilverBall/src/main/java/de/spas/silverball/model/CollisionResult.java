@@ -6,8 +6,14 @@ package de.spas.silverball.model;
 public class CollisionResult {
     private boolean collided;
     private float vx,vy;
+    private float time;
+    private float nx,ny;
 
-    public static final CollisionResult NO_COLLISION = new CollisionResult(false,0,0);
+    /**
+     * creates a reusable result, see set() and clear()
+     */
+    public CollisionResult() {
+    }
 
     public CollisionResult(boolean collided, float vx, float vy) {
         this.collided = collided;
@@ -21,6 +27,28 @@ public class CollisionResult {
         this.vy = vy;
     }
 
+    /**
+     * stores a collision
+     * @param vx,vy velocity after the collision
+     * @param time fraction of the move at which the contact happened, 0..1
+     * @param nx,ny surface normal at the contact point
+     */
+    public CollisionResult set(float vx, float vy, float time, float nx, float ny) {
+        this.collided = true;
+        this.vx = vx;
+        this.vy = vy;
+        this.time = time;
+        this.nx = nx;
+        this.ny = ny;
+        return this;
+    }
+
+    public CollisionResult clear() {
+        collided = false;
+        vx = vy = time = nx = ny = 0;
+        return this;
+    }
+
     public boolean isCollided() {
         return collided;
     }
@@ -33,6 +61,18 @@ public class CollisionResult {
         return vy;
     }
 
+    public float getTime() {
+        return time;
+    }
+
+    public float getNx() {
+        return nx;
+    }
+
+    public float getNy() {
+        return ny;
+    }
+
     @Override
     public String toString() {
         return ""+vx+"/"+vy;
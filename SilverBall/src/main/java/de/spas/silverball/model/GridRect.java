@@ -0,0 +1,11 @@
+package de.spas.silverball.model;
+
+/**
+ * an axis aligned rectangle on the level grid, in cells
+ */
+public interface GridRect {
+    int getX();
+    int getY();
+    int getW();
+    int getH();
+}
@@ -7,6 +7,15 @@ public class Hole {
     private int x;
     private int y;
 
+    // used by Gson
+    public Hole() {
+    }
+
+    public Hole(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
     public int getX() {
         return x;
     }
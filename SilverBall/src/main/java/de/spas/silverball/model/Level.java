@@ -1,6 +1,9 @@
 package de.spas.silverball.model;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by uwe on 24.09.13.
@@ -12,6 +15,21 @@ public class Level {
     private int points;
     private int time;
     private List<Trap> traps;
+    private List<Obstacle> obstacles;
+
+    // used by Gson
+    public Level() {
+    }
+
+    public Level(int number, Ball ball, Hole hole, int points, int time, List<Trap> traps, List<Obstacle> obstacles) {
+        this.number = number;
+        this.ball = ball;
+        this.hole = hole;
+        this.points = points;
+        this.time = time;
+        this.traps = traps;
+        this.obstacles = obstacles;
+    }
 
     public int getNumber() {
         return number;
@@ -36,4 +54,22 @@ public class Level {
     public List<Trap> getTraps() {
         return traps;
     }
+
+    /**
+     * @return the walls of this level, empty if the level has none
+     */
+    public List<Obstacle> getObstacles() {
+        if(obstacles==null) return Collections.emptyList();
+        return obstacles;
+    }
+
+    /**
+     * @return names of all textures used by traps and walls of this level
+     */
+    public Set<String> getTextures() {
+        Set<String> textures = new LinkedHashSet<>();
+        for(Trap t : getTraps()) textures.add(t.getTexture());
+        for(Obstacle o : getObstacles()) textures.add(o.getTexture());
+        return textures;
+    }
 }
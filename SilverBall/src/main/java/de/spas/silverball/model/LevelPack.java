@@ -1,6 +1,8 @@
 package de.spas.silverball.model;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by uwe on 24.09.13.
@@ -9,6 +11,15 @@ public class LevelPack {
     private String name;
     private List<Level> levels;
 
+    // used by Gson
+    public LevelPack() {
+    }
+
+    public LevelPack(String name, List<Level> levels) {
+        this.name = name;
+        this.levels = levels;
+    }
+
     public String getName() {
         return name;
     }
@@ -16,4 +27,13 @@ public class LevelPack {
     public List<Level> getLevels() {
         return levels;
     }
+
+    /**
+     * @return names of all textures used in this pack, in level order
+     */
+    public Set<String> getTextures() {
+        Set<String> textures = new LinkedHashSet<>();
+        for(Level level : levels) textures.addAll(level.getTextures());
+        return textures;
+    }
 }
@@ -4,7 +4,7 @@ package de.spas.silverball.model;
 /**
  * Created by uwe on 24.09.13.
  */
-public class Obstacle {
+public class Obstacle implements GridRect {
     private String type;
     private String texture;
     private int x;
@@ -12,6 +12,19 @@ public class Obstacle {
     private int w;
     private int h;
 
+    // used by Gson
+    public Obstacle() {
+    }
+
+    public Obstacle(String type, String texture, int x, int y, int w, int h) {
+        this.type = type;
+        this.texture = texture;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+    }
+
     public String getType() {
         return type;
     }
@@ -3,18 +3,53 @@ package de.spas.silverball.model;
 
 /**
  * Created by uwe on 24.09.13.
+ * The rect is the cell area the trap is drawn in. The deadly shape inside it is the whole rect,
+ * the circle filling it, or a polygon given by its corners in level coordinates.
  */
-public class Trap {
+public class Trap implements GridRect {
+    public static final String SHAPE_RECT = "rect";
+    public static final String SHAPE_CIRCLE = "circle";
+    public static final String SHAPE_POLYGON = "polygon";
+
     private String texture;
     private int x;
     private int y;
     private int w;
     private int h;
+    private String shape;
+    // x,y pairs, only for polygons
+    private float[] points;
+
+    // used by Gson
+    public Trap() {
+    }
+
+    public Trap(String texture, int x, int y, int w, int h) {
+        this.texture = texture;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+    }
+
+    public Trap(String texture, int x, int y, int w, int h, String shape, float[] points) {
+        this(texture, x, y, w, h);
+        this.shape = shape;
+        this.points = points;
+    }
 
     public String getTexture() {
         return texture;
     }
 
+    public String getShape() {
+        return shape!=null ? shape : SHAPE_RECT;
+    }
+
+    public float[] getPoints() {
+        return points;
+    }
+
 
     public int getH() {
         return h;
@@ -0,0 +1,442 @@
+package de.spas.silverball.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.CollisionResult;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.Obstacle;
+
+/**
+ * Many balls on one level, all under the same tilt. Ball state lives in parallel float arrays
+ * and is integrated in plain loops; balls that fall into a trap or the hole are taken out.
+ * Ball-ball contacts are found by sweep and prune: the balls are kept sorted along one axis,
+ * so only neighbours whose ranges on it overlap are tested. The axis is the one the balls
+ * are spread out more on, balls piled up along a side wall share a single x.
+ * The order hardly changes from step to step and an insertion sort restores it in close to linear time.
+ * Contacts are resolved on positions in a few passes, the distance a ball was pushed then
+ * turns into velocity, which keeps piles stable without stiff impulses. A push into an
+ * obstacle is undone along the normal of its distance field.
+ * Steps do not allocate.
+ */
+public class BallSwarm {
+
+    // tries per ball to find a free spawn position
+    private static final int SPAWN_TRIES = 100;
+    // the sweep axis changes when the spread on the other one is larger by this factor
+    private static final float AXIS_HYSTERESIS = 1.5f;
+    // contact passes per step, a pile needs a few to spread a push through its layers
+    private static final int CONTACT_ITERATIONS = 4;
+
+    private final float timeStep;
+    private final float radius;
+    private final int capacity;
+    // ball state, index is the ball
+    public final float[] x;
+    public final float[] y;
+    public final float[] vx;
+    public final float[] vy;
+    // positions before the contact passes
+    private final float[] cx;
+    private final float[] cy;
+    private final boolean[] active;
+    // ball indices sorted along the sweep axis, active balls first
+    private final int[] order;
+    private boolean sweepY;
+    // for full sorts: position bits and index packed in one long
+    private final long[] sortKeys;
+    private int count;
+    private int activeCount;
+    private float ax;
+    private float ay;
+    // traps, then the hole, as in Simulation
+    private final DistanceField dropField = new DistanceField((int) Simulation.FIELD_WIDTH, (int) Simulation.FIELD_HEIGHT, Simulation.SAMPLES_PER_CELL);
+    private final DistanceField obstacleField = new DistanceField((int) Simulation.FIELD_WIDTH, (int) Simulation.FIELD_HEIGHT, Simulation.SAMPLES_PER_CELL);
+    private final List<Shape> shapes = new ArrayList<>();
+    private final ObstacleCollider obstacles = new ObstacleCollider(Simulation.BOUNCE_FACTOR);
+    private boolean hasObstacles;
+    private final Vector2 position = new Vector2();
+    private final Vector2 velocity = new Vector2();
+    private final Vector2 normal = new Vector2();
+    private final CollisionResult collision = new CollisionResult();
+    private Level level;
+    private long steps;
+    private int holed;
+    private int trapped;
+    private int pairsTested;
+    private int contacts;
+
+    /**
+     * @param timeStep duration of one step in seconds
+     * @param radius of every ball, in level cells, less than one as the obstacle field only reaches a cell
+     */
+    public BallSwarm(float timeStep, int capacity, float radius) {
+        this.timeStep = timeStep;
+        this.capacity = capacity;
+        this.radius = radius;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        cx = new float[capacity];
+        cy = new float[capacity];
+        active = new boolean[capacity];
+        order = new int[capacity];
+        sortKeys = new long[capacity];
+    }
+
+    /**
+     * places up to count balls at random positions of the level, at rest, clear of traps, the hole,
+     * obstacles and each other. A ball that finds no such place in SPAWN_TRIES is left out.
+     * @return the number of balls placed
+     */
+    public int reset(Level level, int count, long seed) {
+        if(count>capacity) throw new IllegalArgumentException("capacity is " + capacity);
+        if(level!=this.level) {
+            Simulation.levelShapes(level, shapes);
+            dropField.build(shapes);
+            shapes.clear();
+            for(Obstacle o : level.getObstacles()) {
+                shapes.add(new RectShape(o.getX(), o.getY(), o.getX() + o.getW(), o.getY() + o.getH()));
+            }
+            obstacleField.build(shapes);
+        }
+        this.level = level;
+        obstacles.build(level.getObstacles());
+        hasObstacles = !level.getObstacles().isEmpty();
+        Random random = new Random(seed);
+        float w = Simulation.FIELD_WIDTH - 2*radius;
+        float h = Simulation.FIELD_HEIGHT - 2*radius;
+        int placed = 0;
+        for(int b=0; b<count; b++) {
+            for(int t=0; t<SPAWN_TRIES; t++) {
+                float px = radius + random.nextFloat()*w;
+                float py = radius + random.nextFloat()*h;
+                if(!isFree(px, py, placed)) continue;
+                x[placed] = px;
+                y[placed] = py;
+                vx[placed] = 0;
+                vy[placed] = 0;
+                active[placed] = true;
+                order[placed] = placed;
+                placed++;
+                break;
+            }
+        }
+        for(int i=placed; i<capacity; i++) active[i] = false;
+        this.count = placed;
+        activeCount = placed;
+        sweepY = false;
+        fullSort();
+        ax = ay = 0;
+        steps = 0;
+        holed = trapped = 0;
+        return placed;
+    }
+
+    /**
+     * @param placed balls 0..placed-1 are already there
+     */
+    private boolean isFree(float px, float py, int placed) {
+        if(dropField.find(px, py)!=DistanceField.NONE || (hasObstacles && obstacleField.distance(px, py) <= radius)) return false;
+        float d2 = 4*radius*radius;
+        for(int i=0; i<placed; i++) {
+            float dx = x[i] - px;
+            float dy = y[i] - py;
+            if(dx*dx + dy*dy < d2) return false;
+        }
+        return true;
+    }
+
+    public void setAcceleration(float x, float y) {
+        ax = x;
+        ay = y;
+    }
+
+    /**
+     * advances all active balls by one step: integration, walls, ball contacts, traps and hole
+     */
+    public void step() {
+        steps++;
+        float dt = timeStep;
+        float dvx = ax*dt;
+        float dvy = ay*dt;
+        int n = activeCount;
+        for(int k=0; k<n; k++) {
+            int i = order[k];
+            vx[i] += dvx;
+            vy[i] += dvy;
+        }
+        if(hasObstacles) {
+            for(int k=0; k<n; k++) moveAlongObstacles(order[k], dt);
+        } else {
+            for(int k=0; k<n; k++) {
+                int i = order[k];
+                x[i] += vx[i]*dt;
+                y[i] += vy[i]*dt;
+            }
+        }
+        for(int k=0; k<n; k++) bounceOffPlayfield(order[k]);
+
+        chooseAxis();
+        sort();
+        System.arraycopy(x, 0, cx, 0, count);
+        System.arraycopy(y, 0, cy, 0, count);
+        int tested = 0;
+        int hits = 0;
+        for(int pass=0; pass<CONTACT_ITERATIONS; pass++) {
+            int c = sweepY
+                    ? collideBalls(y, x, Simulation.FIELD_HEIGHT - radius, Simulation.FIELD_WIDTH - radius)
+                    : collideBalls(x, y, Simulation.FIELD_WIDTH - radius, Simulation.FIELD_HEIGHT - radius);
+            if(pass==0) {
+                tested = pairsTested;
+                hits = c;
+            }
+            if(c==0) break;
+        }
+        pairsTested = tested;
+        contacts = hits;
+        if(hasObstacles && hits>0) {
+            for(int k=0; k<n; k++) pushOutOfObstacles(order[k]);
+        }
+        // what the contacts moved a ball becomes velocity, so a pile stops pressing into itself.
+        // At most a radius per step, else a squeezed pile would blow apart.
+        float invDt = 1 / dt;
+        for(int k=0; k<n; k++) {
+            int i = order[k];
+            float dx = x[i] - cx[i];
+            float dy = y[i] - cy[i];
+            float d2 = dx*dx + dy*dy;
+            float f = d2 > radius*radius ? radius / (float) Math.sqrt(d2) * invDt : invDt;
+            vx[i] += dx*f;
+            vy[i] += dy*f;
+        }
+
+        // traps and hole, removed balls go behind the active ones
+        for(int k=0; k<activeCount; ) {
+            int i = order[k];
+            int shape = dropField.find(x[i], y[i]);
+            if(shape==DistanceField.NONE) {
+                k++;
+                continue;
+            }
+            if(shape<level.getTraps().size()) {
+                trapped++;
+            } else {
+                holed++;
+            }
+            active[i] = false;
+            System.arraycopy(order, k+1, order, k, activeCount - k - 1);
+            order[--activeCount] = i;
+        }
+    }
+
+    private void moveAlongObstacles(int i, float dt) {
+        position.set(x[i], y[i]);
+        velocity.set(vx[i], vy[i]);
+        float remaining = dt;
+        for(int s=0; s<Simulation.MAX_SWEEPS && remaining>0; s++) {
+            obstacles.sweep(position, velocity, remaining, radius, collision);
+            if(!collision.isCollided()) {
+                position.add(velocity, remaining);
+                break;
+            }
+            position.add(velocity, remaining*collision.getTime());
+            position.x += collision.getNx()*Simulation.SKIN;
+            position.y += collision.getNy()*Simulation.SKIN;
+            velocity.set(collision.getVx(), collision.getVy());
+            remaining *= 1-collision.getTime();
+        }
+        x[i] = position.x;
+        y[i] = position.y;
+        vx[i] = velocity.x;
+        vy[i] = velocity.y;
+    }
+
+    /**
+     * moves a ball a contact pushed into an obstacle back out, the step turns it into velocity like any push
+     */
+    private void pushOutOfObstacles(int i) {
+        float d = obstacleField.distance(x[i], y[i]);
+        if(d >= radius) return;
+        obstacleField.normal(x[i], y[i], normal);
+        x[i] = clamp(x[i] + normal.x*(radius - d), Simulation.FIELD_WIDTH - radius);
+        y[i] = clamp(y[i] + normal.y*(radius - d), Simulation.FIELD_HEIGHT - radius);
+    }
+
+    private void bounceOffPlayfield(int i) {
+        float max = Simulation.FIELD_WIDTH - radius;
+        if(x[i] < radius) {
+            x[i] = radius;
+            vx[i] *= -Simulation.BOUNCE_FACTOR;
+        } else if(x[i] > max) {
+            x[i] = max;
+            vx[i] *= -Simulation.BOUNCE_FACTOR;
+        }
+        max = Simulation.FIELD_HEIGHT - radius;
+        if(y[i] < radius) {
+            y[i] = radius;
+            vy[i] *= -Simulation.BOUNCE_FACTOR;
+        } else if(y[i] > max) {
+            y[i] = max;
+            vy[i] *= -Simulation.BOUNCE_FACTOR;
+        }
+    }
+
+    /**
+     * sweeps along the axis with the larger variance of the ball positions
+     */
+    private void chooseAxis() {
+        int n = activeCount;
+        if(n<2) return;
+        float sx = 0, sy = 0, sxx = 0, syy = 0;
+        for(int k=0; k<n; k++) {
+            int i = order[k];
+            sx += x[i];
+            sy += y[i];
+            sxx += x[i]*x[i];
+            syy += y[i]*y[i];
+        }
+        float varX = sxx/n - (sx/n)*(sx/n);
+        float varY = syy/n - (sy/n)*(sy/n);
+        if(sweepY ? varX > varY*AXIS_HYSTERESIS : varY > varX*AXIS_HYSTERESIS) {
+            sweepY = !sweepY;
+            fullSort();
+        }
+    }
+
+    /**
+     * sorts from scratch, for a new swarm or a new axis where insertion sort would be quadratic.
+     * Positions are positive, so their float bits sort like the floats.
+     */
+    private void fullSort() {
+        float[] key = sweepY ? y : x;
+        int n = activeCount;
+        for(int k=0; k<n; k++) {
+            int i = order[k];
+            sortKeys[k] = (long) Float.floatToIntBits(key[i]) << 32 | i;
+        }
+        Arrays.sort(sortKeys, 0, n);
+        for(int k=0; k<n; k++) order[k] = (int) sortKeys[k];
+    }
+
+    /**
+     * insertion sort of the active balls along the sweep axis, fast as the order is nearly kept between steps
+     */
+    private void sort() {
+        float[] key = sweepY ? y : x;
+        for(int k=1; k<activeCount; k++) {
+            int i = order[k];
+            float v = key[i];
+            int j = k - 1;
+            while(j>=0 && key[order[j]] > v) {
+                order[j+1] = order[j];
+                j--;
+            }
+            order[j+1] = i;
+        }
+    }
+
+    /**
+     * sweep along axis a: a ball can only touch the following ones that are less than a diameter further on.
+     * Touching balls are pushed apart, the push a wall keeps one ball from taking goes to the other one,
+     * else balls piled into a corner would end up on the same spot.
+     * b is the other axis, maxA and maxB the largest positions on them.
+     * @return the number of touching pairs
+     */
+    private int collideBalls(float[] a, float[] b, float maxA, float maxB) {
+        float diameter = 2*radius;
+        float d2 = diameter*diameter;
+        int tested = 0;
+        int hits = 0;
+        int n = activeCount;
+        for(int k=0; k<n; k++) {
+            int i = order[k];
+            float ai = a[i];
+            for(int m=k+1; m<n; m++) {
+                int j = order[m];
+                float da = a[j] - ai;
+                if(da >= diameter) break;
+                tested++;
+                float db = b[j] - b[i];
+                if(db >= diameter || db <= -diameter) continue;
+                float dist2 = da*da + db*db;
+                if(dist2 >= d2) continue;
+                hits++;
+                float dist = (float) Math.sqrt(dist2);
+                float na = 1, nb = 0;
+                if(dist > 0) {
+                    na = da / dist;
+                    nb = db / dist;
+                }
+                // separate, half each as far as the walls allow
+                float sa = na*(diameter - dist);
+                float sb = nb*(diameter - dist);
+                float ai0 = a[i];
+                float bi0 = b[i];
+                a[i] = clamp(ai0 - sa*0.5f, maxA);
+                b[i] = clamp(bi0 - sb*0.5f, maxB);
+                a[j] = clamp(a[j] + sa + (a[i] - ai0), maxA);
+                b[j] = clamp(b[j] + sb + (b[i] - bi0), maxB);
+            }
+        }
+        pairsTested = tested;
+        return hits;
+    }
+
+    private float clamp(float v, float max) {
+        return Math.max(radius, Math.min(v, max));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return index of the k-th active ball, 0 <= k < getActiveCount()
+     */
+    public int getActive(int k) {
+        return order[k];
+    }
+
+    public boolean isActive(int i) {
+        return active[i];
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public int getHoled() {
+        return holed;
+    }
+
+    public int getTrapped() {
+        return trapped;
+    }
+
+    /**
+     * @return pairs the broadphase passed on in the last step
+     */
+    public int getPairsTested() {
+        return pairsTested;
+    }
+
+    /**
+     * @return touching pairs resolved in the last step
+     */
+    public int getContacts() {
+        return contacts;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+}
@@ -0,0 +1,107 @@
+package de.spas.silverball.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.spas.silverball.model.GridRect;
+
+/**
+ * Uniform grid over the level cells that maps every cell to the rectangles covering it.
+ * Built once per level, queries do not allocate.
+ */
+public class CellGrid<T extends GridRect> {
+
+    private final int width, height;
+    private final int[] cellStart;
+    private int[] cellItems = new int[0];
+    private int[] marks = new int[0];
+    private int mark;
+    private List<T> items;
+
+    public CellGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cellStart = new int[width*height+1];
+    }
+
+    public void build(List<T> items) {
+        this.items = items;
+        Arrays.fill(cellStart, 0);
+        // count items per cell, shifted by one so the prefix sum yields start offsets
+        for(T item : items) {
+            for(int y=top(item); y<bottom(item); y++) {
+                for(int x=left(item); x<right(item); x++) {
+                    cellStart[y*width+x+1]++;
+                }
+            }
+        }
+        for(int c=1; c<cellStart.length; c++) {
+            cellStart[c] += cellStart[c-1];
+        }
+        if(cellItems.length<cellStart[cellStart.length-1]) {
+            cellItems = new int[cellStart[cellStart.length-1]];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length-1);
+        for(int i=0; i<items.size(); i++) {
+            T item = items.get(i);
+            for(int y=top(item); y<bottom(item); y++) {
+                for(int x=left(item); x<right(item); x++) {
+                    cellItems[fill[y*width+x]++] = i;
+                }
+            }
+        }
+        if(marks.length<items.size()) {
+            marks = new int[items.size()];
+            mark = 0;
+        }
+    }
+
+    /**
+     * Collects every distinct item in the cells under the given box into out (cleared first).
+     * @return the number of items found
+     */
+    public int query(float left, float top, float right, float bottom, List<T> out) {
+        out.clear();
+        if(++mark==0) {
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+        int minX = clamp((int) Math.floor(left), width);
+        int maxX = clamp((int) Math.floor(right), width);
+        int minY = clamp((int) Math.floor(top), height);
+        int maxY = clamp((int) Math.floor(bottom), height);
+        for(int y=minY; y<=maxY; y++) {
+            for(int x=minX; x<=maxX; x++) {
+                int c = y*width+x;
+                for(int i=cellStart[c]; i<cellStart[c+1]; i++) {
+                    int item = cellItems[i];
+                    if(marks[item]!=mark) {
+                        marks[item] = mark;
+                        out.add(items.get(item));
+                    }
+                }
+            }
+        }
+        return out.size();
+    }
+
+    private static int clamp(int v, int size) {
+        return v<0 ? 0 : v>=size ? size-1 : v;
+    }
+
+    private int left(GridRect r) {
+        return Math.max(r.getX(), 0);
+    }
+
+    private int top(GridRect r) {
+        return Math.max(r.getY(), 0);
+    }
+
+    private int right(GridRect r) {
+        return Math.min(r.getX()+r.getW(), width);
+    }
+
+    private int bottom(GridRect r) {
+        return Math.min(r.getY()+r.getH(), height);
+    }
+}
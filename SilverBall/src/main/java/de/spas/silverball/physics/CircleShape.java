@@ -0,0 +1,46 @@
+package de.spas.silverball.physics;
+
+public class CircleShape implements Shape {
+
+    private final float x, y, radius;
+
+    public CircleShape(float x, float y, float radius) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+    }
+
+    @Override
+    public float distance(float px, float py) {
+        float dx = px - x;
+        float dy = py - y;
+        return (float) Math.sqrt(dx*dx + dy*dy) - radius;
+    }
+
+    @Override
+    public boolean contains(float px, float py) {
+        float dx = px - x;
+        float dy = py - y;
+        return dx*dx + dy*dy < radius*radius;
+    }
+
+    @Override
+    public float getLeft() {
+        return x - radius;
+    }
+
+    @Override
+    public float getTop() {
+        return y - radius;
+    }
+
+    @Override
+    public float getRight() {
+        return x + radius;
+    }
+
+    @Override
+    public float getBottom() {
+        return y + radius;
+    }
+}
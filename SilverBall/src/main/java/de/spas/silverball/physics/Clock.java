@@ -0,0 +1,11 @@
+package de.spas.silverball.physics;
+
+/**
+ * Time source of the game loop, replaceable by a VirtualClock to run games faster than real time.
+ */
+public interface Clock {
+
+    Clock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
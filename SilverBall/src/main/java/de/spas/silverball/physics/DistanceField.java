@@ -0,0 +1,180 @@
+package de.spas.silverball.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.spas.math.Vector2;
+
+/**
+ * Signed distance to a set of shapes, sampled on a grid finer than the level cells and
+ * built once per level. Every grid cell also lists the shapes whose bounds reach into it,
+ * so finding the shape under a point tests only those. The shape nearest to the samples
+ * would not do: a shape too small to hold a sample can lie next to a larger one that is
+ * nearer to all four samples around it.
+ * Samples are computed in a band around each shape only, further away the distance is
+ * just known to be at least BAND.
+ * Queries do not allocate.
+ */
+public class DistanceField {
+
+    public static final int NONE = -1;
+    // distance around the shapes that is sampled exactly
+    static final float BAND = 1f;
+
+    private final int columns, rows;
+    private final float spacing;
+    private final float scale;
+    // the point of a sample is within this of every point in its grid cells
+    private final float reach;
+    private final float[] distances;
+    // shapes of grid cell k are cellShapes[cellStart[k]] up to cellShapes[cellStart[k+1]], in list order
+    private final int[] cellStart;
+    private int[] cellShapes = new int[64];
+    private final List<Shape> shapes = new ArrayList<>();
+
+    /**
+     * @param width size of the area in level cells, starting at 0,0
+     * @param samplesPerCell grid resolution, samples per level cell and axis
+     */
+    public DistanceField(int width, int height, int samplesPerCell) {
+        columns = width*samplesPerCell + 1;
+        rows = height*samplesPerCell + 1;
+        scale = samplesPerCell;
+        spacing = 1f / samplesPerCell;
+        reach = spacing * (float) Math.sqrt(2);
+        if(reach >= BAND) throw new IllegalArgumentException("too few samples per cell: " + samplesPerCell);
+        distances = new float[columns*rows];
+        cellStart = new int[(columns-1)*(rows-1) + 1];
+    }
+
+    /**
+     * samples the shapes, their indices in the list are what find() returns
+     */
+    public void build(List<? extends Shape> list) {
+        shapes.clear();
+        shapes.addAll(list);
+        Arrays.fill(distances, BAND);
+        for(int s=0; s<shapes.size(); s++) {
+            Shape shape = shapes.get(s);
+            int left = column(shape.getLeft() - BAND);
+            int right = column(shape.getRight() + BAND) + 1;
+            int top = row(shape.getTop() - BAND);
+            int bottom = row(shape.getBottom() + BAND) + 1;
+            for(int r=top; r<=bottom && r<rows; r++) {
+                for(int c=left; c<=right && c<columns; c++) {
+                    int i = r*columns + c;
+                    distances[i] = Math.min(distances[i], shape.distance(c*spacing, r*spacing));
+                }
+            }
+        }
+        indexCells();
+    }
+
+    /**
+     * lists every shape in the grid cells its bounds overlap
+     */
+    private void indexCells() {
+        int cells = cellStart.length - 1;
+        Arrays.fill(cellStart, 0);
+        // count per cell, shifted by one
+        for(Shape shape : shapes) {
+            for(int r=cellRow(shape.getTop()); r<=cellRow(shape.getBottom()); r++) {
+                for(int c=cellColumn(shape.getLeft()); c<=cellColumn(shape.getRight()); c++) {
+                    cellStart[r*(columns-1) + c + 1]++;
+                }
+            }
+        }
+        for(int k=1; k<=cells; k++) cellStart[k] += cellStart[k-1];
+        if(cellShapes.length < cellStart[cells]) cellShapes = new int[Math.max(cellStart[cells], cellShapes.length*2)];
+        // fill, each start moves on to the end of its cell, which is the start of the next
+        for(int s=0; s<shapes.size(); s++) {
+            Shape shape = shapes.get(s);
+            for(int r=cellRow(shape.getTop()); r<=cellRow(shape.getBottom()); r++) {
+                for(int c=cellColumn(shape.getLeft()); c<=cellColumn(shape.getRight()); c++) {
+                    cellShapes[cellStart[r*(columns-1) + c]++] = s;
+                }
+            }
+        }
+        for(int k=cells; k>0; k--) cellStart[k] = cellStart[k-1];
+        cellStart[0] = 0;
+    }
+
+    /**
+     * @return the distance to the closest shape, interpolated between the samples.
+     * Exact along straight edges that lie on the sample grid, slightly off near corners and curves.
+     * BAND or more away from all shapes it is BAND.
+     */
+    public float distance(float x, float y) {
+        float fx = clamp(x*scale, columns-1);
+        float fy = clamp(y*scale, rows-1);
+        int c = Math.min((int) fx, columns-2);
+        int r = Math.min((int) fy, rows-2);
+        fx -= c;
+        fy -= r;
+        int i = r*columns + c;
+        float top = distances[i] + (distances[i+1] - distances[i])*fx;
+        float bottom = distances[i+columns] + (distances[i+columns+1] - distances[i+columns])*fx;
+        return top + (bottom - top)*fy;
+    }
+
+    /**
+     * direction in which the distance grows fastest, away from the closest shape
+     * @return out, a unit vector, or zero where the field is flat
+     */
+    public Vector2 normal(float x, float y, Vector2 out) {
+        float h = spacing*0.5f;
+        out.set(distance(x+h, y) - distance(x-h, y), distance(x, y+h) - distance(x, y-h));
+        float length = out.length();
+        if(length>0) {
+            out.x /= length;
+            out.y /= length;
+        }
+        return out;
+    }
+
+    /**
+     * The first shape in list order that contains the point, whatever the size of the shapes.
+     * @return the index of the shape in the list given to build(), or NONE
+     */
+    public int find(float x, float y) {
+        int c = cellColumn(x);
+        int r = cellRow(y);
+        // the distance changes at most as fast as the position, so around a point inside
+        // a shape every sample is closer to the shape than the diagonal of a grid cell
+        if(distances[r*columns + c] > reach) return NONE;
+        int k = r*(columns-1) + c;
+        for(int n=cellStart[k]; n<cellStart[k+1]; n++) {
+            int shape = cellShapes[n];
+            if(shapes.get(shape).contains(x, y)) return shape;
+        }
+        return NONE;
+    }
+
+    public Shape getShape(int index) {
+        return shapes.get(index);
+    }
+
+    /**
+     * @return the grid cell column of x, the samples at its left and right are c and c+1
+     */
+    private int cellColumn(float x) {
+        return Math.min((int) clamp(x*scale, columns-1), columns-2);
+    }
+
+    private int cellRow(float y) {
+        return Math.min((int) clamp(y*scale, rows-1), rows-2);
+    }
+
+    private int column(float x) {
+        return (int) clamp((float) Math.floor(x*scale), columns-1);
+    }
+
+    private int row(float y) {
+        return (int) clamp((float) Math.floor(y*scale), rows-1);
+    }
+
+    private static float clamp(float v, float max) {
+        return v<0 ? 0 : v>max ? max : v;
+    }
+}
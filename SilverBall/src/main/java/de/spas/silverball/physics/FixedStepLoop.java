@@ -0,0 +1,77 @@
+package de.spas.silverball.physics;
+
+/**
+ * Decouples the physics rate from the rate the loop is ticked at.
+ * Elapsed clock time is collected in an accumulator and spent in steps of fixed length,
+ * the remainder gives the interpolation factor for rendering between the last two steps.
+ */
+public class FixedStepLoop {
+
+    public interface Stepper {
+        /**
+         * advances the game by one fixed step
+         * @param time clock time in nanos the step ends at, for sampling input that belongs to it
+         * @return false once the game is over and no more steps are wanted
+         */
+        boolean step(long time);
+    }
+
+    private final Clock clock;
+    private final long stepNanos;
+    private final int maxSteps;
+    private long last;
+    private long accumulator;
+
+    /**
+     * @param maxSteps steps per tick at most, time beyond that is dropped so a stall cannot snowball
+     */
+    public FixedStepLoop(Clock clock, long stepNanos, int maxSteps) {
+        this.clock = clock;
+        this.stepNanos = stepNanos;
+        this.maxSteps = maxSteps;
+        reset();
+    }
+
+    /**
+     * starts counting time from now, without any steps due
+     */
+    public void reset() {
+        last = clock.nanoTime();
+        accumulator = 0;
+    }
+
+    /**
+     * runs all steps that are due since the last call
+     * @return the number of steps done
+     */
+    public int advance(Stepper stepper) {
+        long now = clock.nanoTime();
+        accumulator += now - last;
+        last = now;
+        int steps = 0;
+        while(accumulator >= stepNanos) {
+            if(steps==maxSteps) {
+                accumulator %= stepNanos;
+                break;
+            }
+            accumulator -= stepNanos;
+            steps++;
+            if(!stepper.step(now - accumulator)) {
+                accumulator = 0;
+                break;
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * @return how far the clock is between the last step and the next one, 0..1
+     */
+    public float getAlpha() {
+        return (float) accumulator / stepNanos;
+    }
+
+    public long getStepNanos() {
+        return stepNanos;
+    }
+}
@@ -0,0 +1,99 @@
+package de.spas.silverball.physics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.spas.math.Vector2;
+
+/**
+ * Lock-free handoff of timestamped two-axis input from one writer thread (sensor)
+ * to one reader thread (physics). Samples are kept in a ring, the reader asks for the
+ * input at a point in time and gets it interpolated between the samples around it.
+ * The writer never waits, samples the reader has not got to within the capacity are overwritten.
+ * The writer claims a slot before it writes the slot, the reader checks the claims after reading
+ * one. Slots are atomic, so none of their loads moves past that check, and a time is read in one
+ * piece on 32 bit devices as well.
+ */
+public class InputRing {
+
+    private final int mask;
+    private final AtomicLongArray times;
+    // x and y as float bits, x in the high half
+    private final AtomicLongArray values;
+    // samples the writer has started to write, one ahead of written while it is writing
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    // owned by the reader: the newest sample at or before the last sampled time
+    private long read;
+    private boolean hasLast;
+    private long lastTime;
+    private float lastX;
+    private float lastY;
+
+    /**
+     * @param capacity number of samples kept, rounded up to a power of two
+     */
+    public InputRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        times = new AtomicLongArray(size);
+        values = new AtomicLongArray(size);
+    }
+
+    /**
+     * adds a sample, timestamps have to be ascending. Writer thread only.
+     */
+    public void push(long time, float x, float y) {
+        long seq = written.get();
+        int i = (int) seq & mask;
+        claimed.set(seq + 1);
+        times.set(i, time);
+        values.set(i, (long) Float.floatToRawIntBits(x) << 32 | Float.floatToRawIntBits(y) & 0xffffffffL);
+        written.lazySet(seq + 1);
+    }
+
+    /**
+     * drops all samples, only while the writer is not pushing
+     */
+    public void clear() {
+        read = written.get();
+        hasLast = false;
+    }
+
+    /**
+     * the input at the given time, interpolated between the samples before and after it,
+     * or the newest sample if there is none after it yet. Samples before time are consumed,
+     * so times asked for have to be ascending. Reader thread only.
+     * @return false if there has been no input yet, out is unchanged then
+     */
+    public boolean sample(long time, Vector2 out) {
+        while(true) {
+            long available = written.get();
+            long first = claimed.get() - mask;
+            if(read < first) {
+                // fell behind by more than the ring holds
+                read = first;
+            }
+            if(read==available) break;
+            int i = (int) read & mask;
+            long t = times.get(i);
+            long v = values.get(i);
+            if(read < claimed.get() - mask) continue; // overwritten while reading
+            float x = Float.intBitsToFloat((int) (v >>> 32));
+            float y = Float.intBitsToFloat((int) v);
+            if(t > time && hasLast) {
+                float f = time<=lastTime ? 0 : (float) (time - lastTime) / (t - lastTime);
+                out.set(lastX + f*(x - lastX), lastY + f*(y - lastY));
+                return true;
+            }
+            lastTime = t;
+            lastX = x;
+            lastY = y;
+            hasLast = true;
+            read++;
+        }
+        if(!hasLast) return false;
+        out.set(lastX, lastY);
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package de.spas.silverball.physics;
+
+/**
+ * Exponential low-pass filter for two-axis sensor values that arrive at irregular intervals.
+ * The smoothing factor is derived from the time since the previous value,
+ * so the cutoff stays the same whatever rate the sensor delivers at.
+ */
+public class LowPassFilter {
+
+    private float timeConstant;
+    private boolean primed;
+    private long lastTime;
+    private float x;
+    private float y;
+
+    /**
+     * @param cutoffHz frequencies above are damped, 0 passes values through unfiltered
+     */
+    public LowPassFilter(float cutoffHz) {
+        setCutoff(cutoffHz);
+    }
+
+    public void setCutoff(float cutoffHz) {
+        timeConstant = cutoffHz>0 ? (float) (1 / (2*Math.PI*cutoffHz)) : 0;
+    }
+
+    /**
+     * forgets the filter state, the next value is taken as it is
+     */
+    public void reset() {
+        primed = false;
+    }
+
+    /**
+     * filters one value, the result is available from getX() and getY()
+     * @param time timestamp of the value in nanos
+     */
+    public void apply(long time, float vx, float vy) {
+        if(!primed || timeConstant==0) {
+            x = vx;
+            y = vy;
+            primed = true;
+        } else {
+            float dt = Math.max(0, time - lastTime) * 1e-9f;
+            float a = dt / (timeConstant + dt);
+            x += a*(vx - x);
+            y += a*(vy - y);
+        }
+        lastTime = time;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+}
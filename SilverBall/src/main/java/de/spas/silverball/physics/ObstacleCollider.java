@@ -0,0 +1,152 @@
+package de.spas.silverball.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.CollisionResult;
+import de.spas.silverball.model.Obstacle;
+
+/**
+ * Continuous collision of the moving ball against the obstacle walls of a level.
+ * The ball is swept along its path, so it cannot skip over a wall between two steps
+ * no matter how fast it moves.
+ */
+public class ObstacleCollider {
+
+    private final CellGrid<Obstacle> grid = new CellGrid<>((int) Simulation.FIELD_WIDTH, (int) Simulation.FIELD_HEIGHT);
+    private final List<Obstacle> candidates = new ArrayList<>();
+    private final Vector2 normal = new Vector2();
+    private final Vector2 bestNormal = new Vector2();
+    private final float bounceFactor;
+    private boolean empty;
+
+    /**
+     * @param bounceFactor share of the normal speed kept after hitting a wall
+     */
+    public ObstacleCollider(float bounceFactor) {
+        this.bounceFactor = bounceFactor;
+    }
+
+    public void build(List<Obstacle> obstacles) {
+        grid.build(obstacles);
+        empty = obstacles.isEmpty();
+    }
+
+    /**
+     * Sweeps a circle from position along velocity*dt and finds the first wall contact.
+     * @return out, filled with the bounced velocity, contact time and normal, or cleared
+     */
+    public CollisionResult sweep(Vector2 position, Vector2 velocity, float dt, float radius, CollisionResult out) {
+        out.clear();
+        if(empty) return out;
+        float dx = velocity.x*dt;
+        float dy = velocity.y*dt;
+        grid.query(Math.min(position.x, position.x+dx)-radius, Math.min(position.y, position.y+dy)-radius,
+                Math.max(position.x, position.x+dx)+radius, Math.max(position.y, position.y+dy)+radius, candidates);
+        float best = 2;
+        for(int i=0; i<candidates.size(); i++) {
+            Obstacle o = candidates.get(i);
+            float t = sweepCircleRect(position.x, position.y, dx, dy, radius,
+                    o.getX(), o.getY(), o.getX()+o.getW(), o.getY()+o.getH(), normal);
+            if(t>=0 && t<best) {
+                best = t;
+                bestNormal.copyFrom(normal);
+            }
+        }
+        if(best>1) return out;
+        // reflect the normal component, keep the tangential one
+        float vn = velocity.dot(bestNormal);
+        return out.set(velocity.x - (1+bounceFactor)*vn*bestNormal.x,
+                velocity.y - (1+bounceFactor)*vn*bestNormal.y,
+                best, bestNormal.x, bestNormal.y);
+    }
+
+    /**
+     * Time of impact of a circle at (px,py) moving by (dx,dy) against a rectangle.
+     * Uses the rectangle grown by the radius with rounded corners.
+     * @return contact time in 0..1 with the surface normal in normal, or -1 if there is no contact
+     */
+    static float sweepCircleRect(float px, float py, float dx, float dy, float r,
+                                 float left, float top, float right, float bottom, Vector2 normal) {
+        // already touching: report an immediate contact unless moving away
+        float cx = Math.max(left, Math.min(px, right));
+        float cy = Math.max(top, Math.min(py, bottom));
+        float ox = px-cx, oy = py-cy;
+        float d2 = ox*ox+oy*oy;
+        if(d2 <= r*r) {
+            if(d2>0) {
+                normal.set(ox, oy).normalize();
+            } else {
+                insideNormal(px, py, left, top, right, bottom, normal);
+            }
+            return normal.x*dx+normal.y*dy < 0 ? 0 : -1;
+        }
+
+        // slab test against the grown rectangle
+        float tEnter = 0, tExit = 1;
+        float nx = 0, ny = 0;
+        if(dx==0) {
+            if(px < left-r || px > right+r) return -1;
+        } else {
+            float t1 = (left-r-px)/dx, t2 = (right+r-px)/dx;
+            float sign = -1;
+            if(t1>t2) { float tmp=t1; t1=t2; t2=tmp; sign = 1; }
+            if(t1>tEnter) { tEnter = t1; nx = sign; ny = 0; }
+            if(t2<tExit) tExit = t2;
+        }
+        if(dy==0) {
+            if(py < top-r || py > bottom+r) return -1;
+        } else {
+            float t1 = (top-r-py)/dy, t2 = (bottom+r-py)/dy;
+            float sign = -1;
+            if(t1>t2) { float tmp=t1; t1=t2; t2=tmp; sign = 1; }
+            if(t1>tEnter) { tEnter = t1; nx = 0; ny = sign; }
+            if(t2<tExit) tExit = t2;
+        }
+        if(tEnter>=tExit) return -1;
+        if(nx==0 && ny==0) {
+            // started inside the grown rectangle: either next to a rounded corner
+            // or on a face, where rounding put it just behind the touching distance
+            if((px<left || px>right) && (py<top || py>bottom)) {
+                return sweepCirclePoint(px, py, dx, dy, r, px<left ? left : right, py<top ? top : bottom, normal);
+            }
+            if(px<left) normal.set(-1, 0);
+            else if(px>right) normal.set(1, 0);
+            else if(py<top) normal.set(0, -1);
+            else normal.set(0, 1);
+            return normal.x*dx+normal.y*dy < 0 ? 0 : -1;
+        }
+
+        // entering through a corner region: the grown rectangle is round there
+        float hx = px+dx*tEnter, hy = py+dy*tEnter;
+        if((hx<left || hx>right) && (hy<top || hy>bottom)) {
+            return sweepCirclePoint(px, py, dx, dy, r, hx<left ? left : right, hy<top ? top : bottom, normal);
+        }
+        normal.set(nx, ny);
+        return tEnter;
+    }
+
+    private static float sweepCirclePoint(float px, float py, float dx, float dy, float r,
+                                          float cx, float cy, Vector2 normal) {
+        float ox = px-cx, oy = py-cy;
+        float a = dx*dx+dy*dy;
+        float b = 2*(ox*dx+oy*dy);
+        float c = ox*ox+oy*oy-r*r;
+        float disc = b*b-4*a*c;
+        if(a==0 || disc<0) return -1;
+        float t = (float) ((-b-Math.sqrt(disc))/(2*a));
+        if(t<0 || t>1) return -1;
+        normal.set(ox+dx*t, oy+dy*t).normalize();
+        return t;
+    }
+
+    private static void insideNormal(float px, float py, float left, float top, float right, float bottom, Vector2 normal) {
+        float dl = px-left, dr = right-px, dt = py-top, db = bottom-py;
+        float min = Math.min(Math.min(dl, dr), Math.min(dt, db));
+        if(min==dl) normal.set(-1, 0);
+        else if(min==dr) normal.set(1, 0);
+        else if(min==dt) normal.set(0, -1);
+        else normal.set(0, 1);
+    }
+}
@@ -0,0 +1,87 @@
+package de.spas.silverball.physics;
+
+/**
+ * A simple polygon, convex or not, given by its corners in either winding order.
+ */
+public class PolygonShape implements Shape {
+
+    private final float[] points;
+    private float left, top, right, bottom;
+
+    /**
+     * @param points x,y pairs of at least three corners
+     */
+    public PolygonShape(float[] points) {
+        if(points.length<6 || points.length%2!=0) throw new IllegalArgumentException("polygon needs three or more x,y pairs");
+        this.points = points.clone();
+        left = right = points[0];
+        top = bottom = points[1];
+        for(int i=2; i<points.length; i+=2) {
+            left = Math.min(left, points[i]);
+            right = Math.max(right, points[i]);
+            top = Math.min(top, points[i+1]);
+            bottom = Math.max(bottom, points[i+1]);
+        }
+    }
+
+    /**
+     * distance to the nearest edge, negative if the point is inside by the even-odd rule
+     */
+    @Override
+    public float distance(float x, float y) {
+        float[] p = points;
+        int n = p.length;
+        float best = Float.MAX_VALUE;
+        boolean inside = false;
+        for(int i=0, j=n-2; i<n; j=i, i+=2) {
+            float ax = p[j], ay = p[j+1];
+            float bx = p[i], by = p[i+1];
+            float ex = bx - ax, ey = by - ay;
+            float wx = x - ax, wy = y - ay;
+            float len2 = ex*ex + ey*ey;
+            float t = len2>0 ? Math.max(0, Math.min(1, (wx*ex + wy*ey) / len2)) : 0;
+            float dx = wx - ex*t, dy = wy - ey*t;
+            best = Math.min(best, dx*dx + dy*dy);
+            if(crosses(ax, ay, bx, by, x, y)) inside = !inside;
+        }
+        float d = (float) Math.sqrt(best);
+        return inside ? -d : d;
+    }
+
+    @Override
+    public boolean contains(float x, float y) {
+        float[] p = points;
+        boolean inside = false;
+        for(int i=0, j=p.length-2; i<p.length; j=i, i+=2) {
+            if(crosses(p[j], p[j+1], p[i], p[i+1], x, y)) inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * whether a ray from the point towards +x crosses the edge a-b
+     */
+    private static boolean crosses(float ax, float ay, float bx, float by, float x, float y) {
+        return (ay > y) != (by > y) && x < ax + (y - ay) * (bx - ax) / (by - ay);
+    }
+
+    @Override
+    public float getLeft() {
+        return left;
+    }
+
+    @Override
+    public float getTop() {
+        return top;
+    }
+
+    @Override
+    public float getRight() {
+        return right;
+    }
+
+    @Override
+    public float getBottom() {
+        return bottom;
+    }
+}
@@ -0,0 +1,51 @@
+package de.spas.silverball.physics;
+
+public class RectShape implements Shape {
+
+    private final float left, top, right, bottom;
+
+    public RectShape(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    @Override
+    public float distance(float x, float y) {
+        // per axis: distance from the center minus the half size, positive outside
+        float dx = Math.abs(x - (left + right)*0.5f) - (right - left)*0.5f;
+        float dy = Math.abs(y - (top + bottom)*0.5f) - (bottom - top)*0.5f;
+        float ox = Math.max(dx, 0);
+        float oy = Math.max(dy, 0);
+        return (float) Math.sqrt(ox*ox + oy*oy) + Math.min(Math.max(dx, dy), 0);
+    }
+
+    /**
+     * left and top edges are inside, right and bottom ones are not, like CellGrid
+     */
+    @Override
+    public boolean contains(float x, float y) {
+        return x >= left && x < right && y >= top && y < bottom;
+    }
+
+    @Override
+    public float getLeft() {
+        return left;
+    }
+
+    @Override
+    public float getTop() {
+        return top;
+    }
+
+    @Override
+    public float getRight() {
+        return right;
+    }
+
+    @Override
+    public float getBottom() {
+        return bottom;
+    }
+}
@@ -0,0 +1,23 @@
+package de.spas.silverball.physics;
+
+/**
+ * A closed area of the level with its signed distance: negative inside, positive outside.
+ * The bounds limit where a DistanceField samples it.
+ */
+public interface Shape {
+
+    float distance(float x, float y);
+
+    /**
+     * exact test whether the point is inside, the distance is rounded near zero
+     */
+    boolean contains(float x, float y);
+
+    float getLeft();
+
+    float getTop();
+
+    float getRight();
+
+    float getBottom();
+}
@@ -0,0 +1,267 @@
+package de.spas.silverball.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.spas.math.Matrix2;
+import de.spas.math.Vector2;
+import de.spas.silverball.model.CollisionResult;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.Trap;
+
+/**
+ * Ball physics of one level, independent of Android.
+ * All coordinates are level grid units (the playfield is 16x9 cells).
+ */
+public class Simulation {
+
+    public static final float FIELD_WIDTH = 16;
+    public static final float FIELD_HEIGHT = 9;
+    public static final float BALL_RADIUS = 0.4f;
+    static final float BOUNCE_FACTOR = 0.25f;
+    // number of wall contacts resolved within one step
+    static final int MAX_SWEEPS = 4;
+    // distance kept from a wall after a contact so the next sweep starts outside
+    static final float SKIN = 0.001f;
+    // samples per cell and axis of the trap and hole field, cell edges fall on samples
+    static final int SAMPLES_PER_CELL = 8;
+    // substeps one step may take at most, keeps a fast ball from costing more than a few steps
+    public static final int DEFAULT_MAX_SUBSTEPS = 8;
+    // a substep may always move this far, else a ball rolling along a trap would crawl
+    static final float MIN_TRAVEL = BALL_RADIUS*0.125f;
+
+    public enum Event { NONE, BOUNCE, TRAP, HOLE }
+
+    private final float timeStep;
+    private final Vector2 location = new Vector2();
+    private final Vector2 previousPosition = new Vector2();
+    private final Vector2 substepStart = new Vector2();
+    private final Vector2 acceleration = new Vector2();
+    private final Vector2 velocity = new Vector2();
+    private final Matrix2 bounceMatrix = new Matrix2();
+    // traps in level order, then the hole
+    private final DistanceField field = new DistanceField((int) FIELD_WIDTH, (int) FIELD_HEIGHT, SAMPLES_PER_CELL);
+    private final List<Shape> shapes = new ArrayList<>();
+    private final ObstacleCollider obstacles = new ObstacleCollider(BOUNCE_FACTOR);
+    private final CollisionResult collision = new CollisionResult();
+    private Level level;
+    private Trap hitTrap;
+    private long steps;
+    private int maxSubsteps = DEFAULT_MAX_SUBSTEPS;
+    private int substeps;
+
+    /**
+     * @param timeStep duration of one step in seconds
+     */
+    public Simulation(float timeStep) {
+        this.timeStep = timeStep;
+    }
+
+    public void reset(Level level) {
+        // sampling the field costs far more than a short game, replays and solvers restart the same level
+        if(level!=this.level) {
+            levelShapes(level, shapes);
+            field.build(shapes);
+        }
+        this.level = level;
+        obstacles.build(level.getObstacles());
+        location.set(level.getBall().getStartx(), level.getBall().getStarty());
+        previousPosition.copyFrom(location);
+        velocity.set(0, 0);
+        acceleration.set(0, 0);
+        hitTrap = null;
+        steps = 0;
+    }
+
+    public void setAcceleration(float x, float y) {
+        acceleration.set(x, y);
+    }
+
+    /**
+     * limits the work per step, 1 turns substepping off
+     */
+    public void setMaxSubsteps(int maxSubsteps) {
+        this.maxSubsteps = Math.max(1, maxSubsteps);
+    }
+
+    /**
+     * Advances the ball by one fixed time step and resolves walls, traps and the hole.
+     * TRAP and HOLE take precedence over BOUNCE.
+     * The step is split into substeps when the ball would otherwise move further than it is away
+     * from the nearest trap or the hole, so it cannot jump over them. A slow ball or one far from
+     * everything takes a single substep, which is exactly the plain step.
+     */
+    public Event step() {
+        steps++;
+        previousPosition.copyFrom(location);
+        substeps = countSubsteps();
+        float dt = timeStep / substeps;
+        boolean bounced = false;
+        for(int i=0; i<substeps; i++) {
+            bounced |= substep(dt);
+            // a trap overlapping the hole is a level bug, whichever the ball is deeper in wins
+            int shape = field.find(location.x, location.y);
+            hitTrap = trapOf(shape);
+            if(hitTrap!=null) return Event.TRAP;
+            if(shape!=DistanceField.NONE) return Event.HOLE;
+        }
+        return bounced ? Event.BOUNCE : Event.NONE;
+    }
+
+    /**
+     * how far the ball gets this step against how far it may go without skipping a trap or the hole:
+     * the distance to them, which the field has at hand
+     */
+    private int countSubsteps() {
+        if(maxSubsteps==1) return 1;
+        float vx = velocity.x + acceleration.x*timeStep;
+        float vy = velocity.y + acceleration.y*timeStep;
+        float travel2 = (vx*vx + vy*vy) * timeStep*timeStep;
+        float allowed = Math.max(field.distance(location.x, location.y), MIN_TRAVEL);
+        if(travel2 <= allowed*allowed) return 1;
+        int n = (int) Math.ceil(Math.sqrt(travel2) / allowed);
+        return Math.min(n, maxSubsteps);
+    }
+
+    /**
+     * explicit Euler over dt, walls are swept, the playfield border bounces the whole substep
+     * @return true if the ball hit something
+     */
+    private boolean substep(float dt) {
+        velocity.add(acceleration, dt);
+        substepStart.copyFrom(location);
+        boolean bounced = move(dt);
+
+        if(checkBounce()) {
+            bounceMatrix.multiplyInto(velocity, velocity);
+            // move ball to bounced position instead
+            location.copyFrom(substepStart);
+            move(dt);
+            clampToPlayfield();
+            bounced = true;
+        }
+        return bounced;
+    }
+
+    /**
+     * moves the ball along its velocity, bouncing off obstacles on the way
+     * @return true if an obstacle was hit
+     */
+    private boolean move(float dt) {
+        boolean hit = false;
+        float remaining = dt;
+        for(int i=0; i<MAX_SWEEPS && remaining>0; i++) {
+            obstacles.sweep(location, velocity, remaining, BALL_RADIUS, collision);
+            if(!collision.isCollided()) {
+                location.add(velocity, remaining);
+                return hit;
+            }
+            location.add(velocity, remaining*collision.getTime());
+            location.x += collision.getNx()*SKIN;
+            location.y += collision.getNy()*SKIN;
+            velocity.set(collision.getVx(), collision.getVy());
+            remaining *= 1-collision.getTime();
+            hit = true;
+        }
+        return hit;
+    }
+
+    private void clampToPlayfield() {
+        location.x = Math.max(BALL_RADIUS, Math.min(location.x, FIELD_WIDTH - BALL_RADIUS));
+        location.y = Math.max(BALL_RADIUS, Math.min(location.y, FIELD_HEIGHT - BALL_RADIUS));
+    }
+
+    private boolean checkBounce() {
+        boolean res=false;
+        bounceMatrix.unity();
+        // check playfield bounds and bounce
+        if (location.x < BALL_RADIUS) {
+            location.x = BALL_RADIUS;
+            bounceMatrix.xx=-BOUNCE_FACTOR;
+            res=true;
+        }
+        if (location.y < BALL_RADIUS) {
+            location.y = BALL_RADIUS;
+            bounceMatrix.yy=-BOUNCE_FACTOR;
+            res=true;
+        }
+        if (location.x > FIELD_WIDTH - BALL_RADIUS) {
+            location.x = FIELD_WIDTH - BALL_RADIUS;
+            bounceMatrix.xx=-BOUNCE_FACTOR;
+            res=true;
+        }
+        if (location.y > FIELD_HEIGHT - BALL_RADIUS) {
+            location.y = FIELD_HEIGHT - BALL_RADIUS;
+            bounceMatrix.yy=-BOUNCE_FACTOR;
+            res=true;
+        }
+        return res;
+    }
+
+    public Trap findTrap(float x, float y) {
+        return trapOf(field.find(x, y));
+    }
+
+    private Trap trapOf(int shape) {
+        return shape!=DistanceField.NONE && shape<level.getTraps().size() ? level.getTraps().get(shape) : null;
+    }
+
+    /**
+     * the deadly shape of every trap in level order, then the hole: the area in which the
+     * center of the ball drops in
+     */
+    static void levelShapes(Level level, List<Shape> out) {
+        out.clear();
+        for(Trap t : level.getTraps()) out.add(trapShape(t));
+        out.add(new CircleShape(level.getHole().getX(), level.getHole().getY(), BALL_RADIUS));
+    }
+
+    static Shape trapShape(Trap t) {
+        switch (t.getShape()) {
+            case Trap.SHAPE_CIRCLE:
+                return new CircleShape(t.getX() + t.getW()*0.5f, t.getY() + t.getH()*0.5f, Math.min(t.getW(), t.getH())*0.5f);
+            case Trap.SHAPE_POLYGON:
+                return new PolygonShape(t.getPoints());
+            default:
+                return new RectShape(t.getX(), t.getY(), t.getX() + t.getW(), t.getY() + t.getH());
+        }
+    }
+
+    public Vector2 getLocation() {
+        return location;
+    }
+
+    /**
+     * @return where the ball was before the last step
+     */
+    public Vector2 getPreviousPosition() {
+        return previousPosition;
+    }
+
+    public Vector2 getVelocity() {
+        return velocity;
+    }
+
+    public Trap getHitTrap() {
+        return hitTrap;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the number of substeps the last step was split into
+     */
+    public int getSubsteps() {
+        return substeps;
+    }
+}
@@ -0,0 +1,46 @@
+package de.spas.silverball.physics;
+
+/**
+ * State of one physics step as seen by the renderer, in level grid units.
+ */
+public class Snapshot {
+    public float ballX, ballY;
+    // ball position one step earlier, for interpolation
+    public float previousX, previousY;
+    // swarm mode: the active balls, now and one step earlier, instead of the ball above
+    public boolean swarm;
+    public int balls;
+    public float[] ballsX = new float[0], ballsY = new float[0];
+    public float[] previousBallsX = new float[0], previousBallsY = new float[0];
+    public float ballRadius;
+    public int points;
+    public long step; // set by SnapshotExchange.publish()
+
+    /**
+     * makes room for count balls, allocates only when a swarm is larger than any before
+     */
+    public void ensureBalls(int count) {
+        if(ballsX.length>=count) return;
+        ballsX = new float[count];
+        ballsY = new float[count];
+        previousBallsX = new float[count];
+        previousBallsY = new float[count];
+    }
+
+    public void copyFrom(Snapshot s) {
+        ballX = s.ballX;
+        ballY = s.ballY;
+        previousX = s.previousX;
+        previousY = s.previousY;
+        swarm = s.swarm;
+        ensureBalls(s.balls);
+        balls = s.balls;
+        System.arraycopy(s.ballsX, 0, ballsX, 0, balls);
+        System.arraycopy(s.ballsY, 0, ballsY, 0, balls);
+        System.arraycopy(s.previousBallsX, 0, previousBallsX, 0, balls);
+        System.arraycopy(s.previousBallsY, 0, previousBallsY, 0, balls);
+        ballRadius = s.ballRadius;
+        points = s.points;
+        step = s.step;
+    }
+}
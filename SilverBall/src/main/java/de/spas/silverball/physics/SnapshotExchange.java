@@ -0,0 +1,46 @@
+package de.spas.silverball.physics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of snapshots from one writer thread (physics) to one reader thread (render).
+ * Three buffers rotate: the writer fills its back buffer and swaps it with the latest one,
+ * the reader swaps its front buffer with the latest one when it is newer.
+ * Neither side ever waits and the reader always sees a complete snapshot.
+ */
+public class SnapshotExchange {
+
+    private static final int INDEX = 3;
+    private static final int FRESH = 4;
+
+    private final Snapshot[] buffers = { new Snapshot(), new Snapshot(), new Snapshot() };
+    private final AtomicInteger latest = new AtomicInteger(1);
+    private int back = 0;   // owned by the writer
+    private int front = 2;  // owned by the reader
+    private long sequence;  // owned by the writer
+
+    /**
+     * @return the buffer to fill, call publish() when done. Writer thread only.
+     */
+    public Snapshot beginWrite() {
+        return buffers[back];
+    }
+
+    /**
+     * makes the filled buffer visible to the reader and stamps its step number
+     */
+    public void publish() {
+        buffers[back].step = ++sequence;
+        back = latest.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * @return the most recently published snapshot. Reader thread only, valid until the next call.
+     */
+    public Snapshot read() {
+        if((latest.get() & FRESH)!=0) {
+            front = latest.getAndSet(front) & INDEX;
+        }
+        return buffers[front];
+    }
+}
@@ -0,0 +1,18 @@
+package de.spas.silverball.physics;
+
+/**
+ * A clock that only moves when told to.
+ */
+public class VirtualClock implements Clock {
+
+    private volatile long now;
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    public void advance(long nanos) {
+        now += nanos;
+    }
+}
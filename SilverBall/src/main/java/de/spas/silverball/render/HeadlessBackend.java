@@ -0,0 +1,75 @@
+package de.spas.silverball.render;
+
+/**
+ * Draws nothing, counts what a frame would cost: draw calls, and how often
+ * consecutive calls switch between textures or paints.
+ */
+public class HeadlessBackend implements RenderBackend {
+
+    private int drawCalls;
+    private int bitmaps;
+    private int circles;
+    private int texts;
+    private int stateChanges;
+    private int lastKind = -1;
+    private int lastId = -1;
+
+    public void reset() {
+        drawCalls = bitmaps = circles = texts = stateChanges = 0;
+        lastKind = lastId = -1;
+    }
+
+    @Override
+    public void clear() {
+        drawCalls++;
+    }
+
+    @Override
+    public void bitmap(int texture, float srcLeft, float srcTop, float srcRight, float srcBottom,
+                       float left, float top, float right, float bottom) {
+        bitmaps++;
+        use(RenderCommands.BITMAP, texture);
+    }
+
+    @Override
+    public void circle(int paint, float x, float y, float radius) {
+        circles++;
+        use(RenderCommands.CIRCLE, paint);
+    }
+
+    @Override
+    public void text(int paint, char[] chars, int length, float x, float y) {
+        texts++;
+        use(RenderCommands.TEXT, paint);
+    }
+
+    private void use(int kind, int id) {
+        drawCalls++;
+        if(kind!=lastKind || id!=lastId) stateChanges++;
+        lastKind = kind;
+        lastId = id;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getBitmaps() {
+        return bitmaps;
+    }
+
+    public int getCircles() {
+        return circles;
+    }
+
+    public int getTexts() {
+        return texts;
+    }
+
+    /**
+     * @return switches to another texture or paint between consecutive draw calls
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+}
@@ -0,0 +1,20 @@
+package de.spas.silverball.render;
+
+/**
+ * Executes the commands of a RenderCommands list. Textures and paints are known by id,
+ * what they stand for is up to the backend.
+ */
+public interface RenderBackend {
+
+    void clear();
+
+    /**
+     * draws the src rect of a texture (in texture pixels) into the dst rect
+     */
+    void bitmap(int texture, float srcLeft, float srcTop, float srcRight, float srcBottom,
+                float left, float top, float right, float bottom);
+
+    void circle(int paint, float x, float y, float radius);
+
+    void text(int paint, char[] chars, int length, float x, float y);
+}
@@ -0,0 +1,148 @@
+package de.spas.silverball.render;
+
+import java.util.Arrays;
+
+/**
+ * A frame described as a list of draw commands in primitive arrays, to be replayed by a RenderBackend.
+ * Every command belongs to the layer set when it was added. Layers are drawn in ascending order,
+ * within a layer the order is free: sort() groups commands by kind and texture or paint,
+ * so a backend switches state as rarely as possible.
+ * Recording, sorting and replaying do not allocate once the arrays have grown to the frame size.
+ */
+public class RenderCommands {
+
+    public static final int CLEAR = 0;
+    public static final int BITMAP = 1;
+    public static final int CIRCLE = 2;
+    public static final int TEXT = 3;
+
+    private static final int FLOATS = 8;
+    private static final int MAX_LAYER = 0x7f;
+    private static final int MAX_ID = 0xffff;
+
+    private int count;
+    private int layer;
+    private int[] kinds = new int[64];
+    private int[] layers = new int[64];
+    private int[] ids = new int[64];
+    private int[] lengths = new int[64];
+    private float[] floats = new float[64*FLOATS];
+    private char[][] texts = new char[64][];
+    // replay order, identity until sort()
+    private int[] order = new int[64];
+    private long[] sortKeys = new long[64];
+
+    /**
+     * empties the list for the next frame, the arrays are kept
+     */
+    public void reset() {
+        for(int i=0; i<count; i++) texts[i] = null;
+        count = 0;
+        layer = 0;
+    }
+
+    /**
+     * @param layer 0..127, commands added from now on are drawn after those of lower layers
+     */
+    public void setLayer(int layer) {
+        if(layer<0 || layer>MAX_LAYER) throw new IllegalArgumentException("layer " + layer);
+        this.layer = layer;
+    }
+
+    public void clear() {
+        add(CLEAR, 0);
+    }
+
+    public void bitmap(int texture, float srcLeft, float srcTop, float srcRight, float srcBottom,
+                       float left, float top, float right, float bottom) {
+        int i = add(BITMAP, texture);
+        int f = i*FLOATS;
+        floats[f] = srcLeft;
+        floats[f+1] = srcTop;
+        floats[f+2] = srcRight;
+        floats[f+3] = srcBottom;
+        floats[f+4] = left;
+        floats[f+5] = top;
+        floats[f+6] = right;
+        floats[f+7] = bottom;
+    }
+
+    public void circle(int paint, float x, float y, float radius) {
+        int f = add(CIRCLE, paint)*FLOATS;
+        floats[f] = x;
+        floats[f+1] = y;
+        floats[f+2] = radius;
+    }
+
+    /**
+     * the chars are referenced, not copied, and must not change before the list is replayed
+     */
+    public void text(int paint, char[] chars, int length, float x, float y) {
+        int i = add(TEXT, paint);
+        texts[i] = chars;
+        lengths[i] = length;
+        floats[i*FLOATS] = x;
+        floats[i*FLOATS+1] = y;
+    }
+
+    private int add(int kind, int id) {
+        if(id<0 || id>MAX_ID) throw new IllegalArgumentException("id " + id);
+        if(count==kinds.length) grow();
+        int i = count++;
+        kinds[i] = kind;
+        layers[i] = layer;
+        ids[i] = id;
+        order[i] = i;
+        return i;
+    }
+
+    private void grow() {
+        int size = kinds.length*2;
+        kinds = Arrays.copyOf(kinds, size);
+        layers = Arrays.copyOf(layers, size);
+        ids = Arrays.copyOf(ids, size);
+        lengths = Arrays.copyOf(lengths, size);
+        floats = Arrays.copyOf(floats, size*FLOATS);
+        texts = Arrays.copyOf(texts, size);
+        order = Arrays.copyOf(order, size);
+        sortKeys = new long[size];
+    }
+
+    /**
+     * orders the commands by layer, then kind, then texture or paint id,
+     * keeping the recorded order among equal ones
+     */
+    public void sort() {
+        for(int i=0; i<count; i++) {
+            sortKeys[i] = (long) layers[i] << 56 | (long) kinds[i] << 48 | (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+        for(int i=0; i<count; i++) order[i] = (int) sortKeys[i];
+    }
+
+    public void replay(RenderBackend backend) {
+        for(int k=0; k<count; k++) {
+            int i = order[k];
+            int f = i*FLOATS;
+            switch(kinds[i]) {
+                case CLEAR:
+                    backend.clear();
+                    break;
+                case BITMAP:
+                    backend.bitmap(ids[i], floats[f], floats[f+1], floats[f+2], floats[f+3],
+                            floats[f+4], floats[f+5], floats[f+6], floats[f+7]);
+                    break;
+                case CIRCLE:
+                    backend.circle(ids[i], floats[f], floats[f+1], floats[f+2]);
+                    break;
+                case TEXT:
+                    backend.text(ids[i], texts[i], lengths[i], floats[f], floats[f+1]);
+                    break;
+            }
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,84 @@
+package de.spas.silverball.replay;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A recorded run, decoded from the format written by ReplayRecorder.
+ * The physics has no randomness, so level, time step and the input of every step
+ * are all it takes to repeat the run. Only single ball runs are recorded, the swarm
+ * spawns at random places and its runs are not kept.
+ */
+public class Replay {
+
+    private final int levelNumber;
+    private final float timeStep;
+    private final float[] accelerationX;
+    private final float[] accelerationY;
+
+    private Replay(int levelNumber, float timeStep, float[] accelerationX, float[] accelerationY) {
+        this.levelNumber = levelNumber;
+        this.timeStep = timeStep;
+        this.accelerationX = accelerationX;
+        this.accelerationY = accelerationY;
+    }
+
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if(data.readInt()!=ReplayRecorder.MAGIC) throw new IOException("not a replay");
+        short version = data.readShort();
+        if(version!=ReplayRecorder.VERSION) throw new IOException("unsupported replay version " + version);
+        int levelNumber = data.readInt();
+        float timeStep = data.readFloat();
+        int steps = data.readInt();
+        if(steps<0) throw new IOException("bad step count " + steps);
+        float[] xs = new float[steps];
+        float[] ys = new float[steps];
+        int x = 0;
+        int y = 0;
+        for(int i=0; i<steps; i++) {
+            x += unzigzag(readVarint(data));
+            y += unzigzag(readVarint(data));
+            xs[i] = x / ReplayRecorder.QUANTUM;
+            ys[i] = y / ReplayRecorder.QUANTUM;
+        }
+        return new Replay(levelNumber, timeStep, xs, ys);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift=0; shift<32; shift+=7) {
+            int b = in.read();
+            if(b<0) throw new EOFException("replay truncated");
+            value |= (b & 0x7f) << shift;
+            if((b & 0x80)==0) return value;
+        }
+        throw new IOException("bad varint");
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    public int getSteps() {
+        return accelerationX.length;
+    }
+
+    public float getAccelerationX(int step) {
+        return accelerationX[step];
+    }
+
+    public float getAccelerationY(int step) {
+        return accelerationY[step];
+    }
+}
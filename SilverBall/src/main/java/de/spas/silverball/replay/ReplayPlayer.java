@@ -0,0 +1,116 @@
+package de.spas.silverball.replay;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * Repeats recorded runs without a device or a clock, as fast as the physics goes,
+ * following the rules of GameEngine: the run ends in the hole, in a trap or when the level time is up.
+ * <pre>java de.spas.silverball.replay.ReplayPlayer levels.json run1.sbr [run2.sbr ...]</pre>
+ */
+public class ReplayPlayer {
+
+    private static final long BENCHMARK_NANOS = 1_000_000_000L;
+
+    public static class Result {
+        public final Simulation.Event event;
+        public final long steps;
+        public final Vector2 location;
+        public final int points;
+
+        Result(Simulation.Event event, long steps, Vector2 location, int points) {
+            this.event = event;
+            this.steps = steps;
+            this.location = location;
+            this.points = points;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s after %d steps at (%.4f, %.4f), %d points",
+                    event==Simulation.Event.NONE ? "TIMEOUT" : event, steps, location.x, location.y, points);
+        }
+    }
+
+    private final Simulation simulation;
+
+    public ReplayPlayer(float timeStep) {
+        simulation = new Simulation(timeStep);
+    }
+
+    /**
+     * @return how the run ended, event NONE if the time was up or the recording ended before
+     */
+    public Result play(Level level, Replay replay) {
+        simulation.reset(level);
+        long stepMillis = Math.round(simulation.getTimeStep()*1000);
+        long timeMillis = level.getTime()*1000L;
+        Simulation.Event event = Simulation.Event.NONE;
+        for(int i=0; i<replay.getSteps(); i++) {
+            if(simulation.getSteps()*stepMillis >= timeMillis) break;
+            simulation.setAcceleration(replay.getAccelerationX(i), replay.getAccelerationY(i));
+            event = simulation.step();
+            if(event==Simulation.Event.HOLE || event==Simulation.Event.TRAP) break;
+        }
+        if(event==Simulation.Event.BOUNCE) event = Simulation.Event.NONE;
+        long remaining = timeMillis - simulation.getSteps()*stepMillis;
+        int points = Math.round(remaining * level.getPoints()*0.001f / level.getTime());
+        return new Result(event, simulation.getSteps(), new Vector2(simulation.getLocation().x, simulation.getLocation().y), points);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length<2) {
+            System.err.println("usage: ReplayPlayer <levels.json> <replay>...");
+            System.exit(1);
+        }
+        LevelPack pack;
+        try(Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(args[0])), StandardCharsets.UTF_8)) {
+            pack = new Gson().fromJson(reader, LevelPack.class);
+        }
+        for(int i=1; i<args.length; i++) {
+            Replay replay;
+            try(InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(args[i])))) {
+                replay = Replay.read(in);
+            }
+            Level level = findLevel(pack, replay.getLevelNumber());
+            if(level==null) {
+                System.err.println(args[i] + ": no level " + replay.getLevelNumber());
+                continue;
+            }
+            ReplayPlayer player = new ReplayPlayer(replay.getTimeStep());
+            Result result = player.play(level, replay);
+
+            // repeat for a second to measure how fast the physics runs
+            long steps = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                steps += player.play(level, replay).steps;
+                elapsed = System.nanoTime() - start;
+            } while(elapsed < BENCHMARK_NANOS);
+            System.out.println(String.format(Locale.US, "%s: level %d %s, %.1f M steps/s",
+                    args[i], level.getNumber(), result, steps*1000f/elapsed));
+        }
+    }
+
+    private static Level findLevel(LevelPack pack, int number) {
+        for(Level level : pack.getLevels()) {
+            if(level.getNumber()==number) return level;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package de.spas.silverball.replay;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import de.spas.math.Vector2;
+
+/**
+ * Records the acceleration of every physics step of one run, encoded as it comes in.
+ * Values are quantized to 1/QUANTUM, each step stores the zigzag varint of the change
+ * since the previous step, so a steadily held device costs two bytes per step.
+ * The game has to run on the quantized values so a replay repeats it exactly.
+ *
+ * File layout, big endian:
+ * <pre>
+ * int magic, short version, int level number, float time step, int step count
+ * step: varint zigzag(dx), varint zigzag(dy)
+ * </pre>
+ */
+public class ReplayRecorder {
+
+    public static final int MAGIC = 0x53425250; // "SBRP"
+    public static final short VERSION = 1;
+    public static final float QUANTUM = 256f;
+
+    private int levelNumber;
+    private float timeStep;
+    private int steps;
+    private int lastX;
+    private int lastY;
+    private byte[] data = new byte[1024];
+    private int length;
+
+    /**
+     * starts a new recording, the buffer of the previous one is reused
+     */
+    public void begin(int levelNumber, float timeStep) {
+        this.levelNumber = levelNumber;
+        this.timeStep = timeStep;
+        steps = 0;
+        lastX = 0;
+        lastY = 0;
+        length = 0;
+    }
+
+    /**
+     * quantizes the acceleration of the next step in place and records it
+     */
+    public void record(Vector2 acceleration) {
+        int x = quantize(acceleration.x);
+        int y = quantize(acceleration.y);
+        quantize(acceleration);
+        if(length + 10 > data.length) data = Arrays.copyOf(data, data.length*2);
+        writeVarint(zigzag(x - lastX));
+        writeVarint(zigzag(y - lastY));
+        lastX = x;
+        lastY = y;
+        steps++;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(levelNumber);
+        data.writeFloat(timeStep);
+        data.writeInt(steps);
+        data.write(this.data, 0, length);
+        data.flush();
+    }
+
+    /**
+     * rounds to the values a replay can hold, for runs that are to be recorded later
+     */
+    public static void quantize(Vector2 acceleration) {
+        acceleration.set(quantize(acceleration.x) / QUANTUM, quantize(acceleration.y) / QUANTUM);
+    }
+
+    private static int quantize(float value) {
+        return Math.round(value * QUANTUM);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void writeVarint(int value) {
+        while((value & ~0x7f)!=0) {
+            data[length++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+}
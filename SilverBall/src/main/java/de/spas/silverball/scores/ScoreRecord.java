@@ -0,0 +1,47 @@
+package de.spas.silverball.scores;
+
+/**
+ * One finished run: a level won, or a whole game up to its end.
+ */
+public class ScoreRecord {
+
+    public static final byte LEVEL = 1;
+    public static final byte GAME = 2;
+
+    public final byte kind;
+    // level number for LEVEL, levels won for GAME
+    public final int level;
+    public final int points;
+    // physics steps the run took
+    public final int steps;
+    // end of the run, System.currentTimeMillis()
+    public final long time;
+
+    public ScoreRecord(byte kind, int level, int points, int steps, long time) {
+        this.kind = kind;
+        this.level = level;
+        this.points = points;
+        this.steps = steps;
+        this.time = time;
+    }
+
+    public static ScoreRecord level(int number, int points, int steps, long time) {
+        return new ScoreRecord(LEVEL, number, points, steps, time);
+    }
+
+    public static ScoreRecord game(int levelsWon, int points, int steps, long time) {
+        return new ScoreRecord(GAME, levelsWon, points, steps, time);
+    }
+
+    /**
+     * more points win, on a tie the faster run
+     */
+    public boolean beats(ScoreRecord other) {
+        return other==null || points>other.points || (points==other.points && steps<other.steps);
+    }
+
+    @Override
+    public String toString() {
+        return (kind==GAME ? "game, " + level + " levels" : "level " + level) + ": " + points + " points in " + steps + " steps at " + time;
+    }
+}
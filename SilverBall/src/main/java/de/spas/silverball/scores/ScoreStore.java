@@ -0,0 +1,304 @@
+package de.spas.silverball.scores;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Best run per level and the best games, kept in an append-only log file.
+ * record() only updates the bests in memory and queues the record, a background thread
+ * appends what is queued and syncs the file to disk at most every SYNC_DELAY_MS, or on flush().
+ * open() reads the log and, if it holds more than the bests, a torn record at the end
+ * (the process died while writing) or a damaged one, rewrites it with only the bests.
+ * Records have a fixed size, so a damaged record is skipped and the ones after it still count.
+ *
+ * Layout, big endian:
+ * <pre>
+ * int magic, short version
+ * record: byte kind, int level, int points, int steps, long time, int CRC32 of the fields
+ * </pre>
+ */
+public class ScoreStore {
+
+    public static final int MAGIC = 0x53425343; // "SBSC"
+    public static final int VERSION = 1;
+    // games kept besides the best run of every level
+    public static final int TOP_GAMES = 10;
+    private static final int HEADER_SIZE = 6;
+    private static final int FIELDS_SIZE = 1 + 4 + 4 + 4 + 8;
+    private static final int RECORD_SIZE = FIELDS_SIZE + 4;
+    private static final long SYNC_DELAY_MS = 2000;
+
+    public interface ErrorHandler {
+        /**
+         * called on the background thread when appending or syncing failed
+         */
+        void onError(IOException e);
+    }
+
+    private final File file;
+    private final ErrorHandler errorHandler;
+    private final Map<Integer, ScoreRecord> bestLevels = new HashMap<>();
+    private final List<ScoreRecord> bestGames = new ArrayList<>();
+    private final ConcurrentLinkedQueue<ScoreRecord> queue = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    // writer thread only
+    private FileOutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE*16);
+    private final CRC32 crc = new CRC32();
+    private boolean syncScheduled;
+    private boolean unsynced;
+
+    private ScoreStore(File file, ErrorHandler errorHandler) {
+        this.file = file;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * reads and compacts the log, blocking, so call it off the UI thread.
+     * A missing file is an empty store.
+     */
+    public static ScoreStore open(File file, ErrorHandler errorHandler) throws IOException {
+        ScoreStore store = new ScoreStore(file, errorHandler);
+        store.load();
+        return store;
+    }
+
+    /**
+     * remembers the run and queues it for the log, does not block
+     */
+    public void record(ScoreRecord record) {
+        synchronized (this) {
+            keep(record);
+        }
+        queue.add(record);
+        // after close() the bests still count for this session, the file is done
+        if(!submit(this::append)) queue.remove(record);
+    }
+
+    /**
+     * @return the best run of the level, or null
+     */
+    public synchronized ScoreRecord getBestLevel(int number) {
+        return bestLevels.get(number);
+    }
+
+    /**
+     * @return the best games, best first
+     */
+    public synchronized List<ScoreRecord> getBestGames() {
+        return new ArrayList<>(bestGames);
+    }
+
+    /**
+     * @return the points of the best game, 0 if there was none
+     */
+    public synchronized int getHighscore() {
+        return bestGames.isEmpty() ? 0 : bestGames.get(0).points;
+    }
+
+    /**
+     * syncs what was recorded so far soon, e.g. when the app goes to the background. Does not block.
+     */
+    public void flush() {
+        submit(this::sync);
+    }
+
+    /**
+     * writes and syncs what is queued, then stops the background thread. Does not block.
+     */
+    public void close() {
+        synchronized (writer) {
+            if(!submit(() -> {
+                sync();
+                closeOut();
+            })) return;
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * waits until close() has written everything, for tests
+     */
+    boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        return writer.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * hands the task to the writer unless close() stopped it. Checking and submitting under the
+     * lock of close() keeps execute() from throwing RejectedExecutionException on the caller's thread.
+     * @return false if the writer is stopped
+     */
+    private boolean submit(Runnable task) {
+        synchronized (writer) {
+            if(writer.isShutdown()) return false;
+            writer.execute(task);
+            return true;
+        }
+    }
+
+    private void load() throws IOException {
+        int read = 0;
+        boolean clean = false;
+        if(file.exists()) {
+            try(RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                ByteBuffer b = ByteBuffer.allocate((int) in.length());
+                in.getChannel().read(b, 0);
+                b.flip();
+                if(b.remaining()>=HEADER_SIZE && b.getInt()==MAGIC && b.getShort()==VERSION) {
+                    clean = true;
+                    while(b.remaining()>0) {
+                        if(b.remaining()<RECORD_SIZE) {
+                            // cut off
+                            clean = false;
+                            break;
+                        }
+                        ScoreRecord r = decode(b);
+                        if(r==null) {
+                            clean = false;
+                            continue;
+                        }
+                        keep(r);
+                        read++;
+                    }
+                }
+            }
+        }
+        if(!clean || read>bestLevels.size()+bestGames.size()) rewrite();
+    }
+
+    /**
+     * replaces the log with one holding only the bests, atomically by renaming a synced temporary file
+     */
+    private void rewrite() throws IOException {
+        List<ScoreRecord> records = new ArrayList<>(bestLevels.values());
+        records.addAll(bestGames);
+        // oldest first, as they were appended
+        Collections.sort(records, (a, b) -> a.time<b.time ? -1 : a.time>b.time ? 1 : 0);
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + RECORD_SIZE*records.size());
+        b.putInt(MAGIC).putShort((short) VERSION);
+        for(ScoreRecord r : records) encode(r, b);
+        b.flip();
+        File tmp = new File(file.getPath() + ".tmp");
+        try(FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            FileChannel channel = tmpOut.getChannel();
+            while(b.hasRemaining()) channel.write(b);
+            channel.force(true);
+        }
+        if(!tmp.renameTo(file)) throw new IOException("cannot replace " + file);
+    }
+
+    private void keep(ScoreRecord r) {
+        if(r.kind==ScoreRecord.LEVEL) {
+            if(r.beats(bestLevels.get(r.level))) bestLevels.put(r.level, r);
+        } else if(r.kind==ScoreRecord.GAME) {
+            int i = 0;
+            while(i<bestGames.size() && !r.beats(bestGames.get(i))) i++;
+            if(i<TOP_GAMES) {
+                bestGames.add(i, r);
+                if(bestGames.size()>TOP_GAMES) bestGames.remove(TOP_GAMES);
+            }
+        }
+    }
+
+    private void append() {
+        write();
+        // syncs are costly, one every SYNC_DELAY_MS covers all records in between
+        if(unsynced && !syncScheduled) {
+            synchronized (writer) {
+                // after close() its own task syncs
+                if(writer.isShutdown()) return;
+                writer.schedule(this::sync, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+            syncScheduled = true;
+        }
+    }
+
+    private void write() {
+        if(queue.isEmpty()) return;
+        try {
+            if(out==null) {
+                out = new FileOutputStream(file, true);
+                // a failed write may have left part of a record, the next ones must start on a boundary
+                FileChannel channel = out.getChannel();
+                long size = channel.size();
+                if(size>HEADER_SIZE) channel.truncate(size - (size-HEADER_SIZE)%RECORD_SIZE);
+            }
+            FileChannel channel = out.getChannel();
+            ScoreRecord r;
+            while((r = queue.poll())!=null) {
+                if(buffer.remaining()<RECORD_SIZE) drain(channel);
+                encode(r, buffer);
+                unsynced = true;
+            }
+            drain(channel);
+        } catch (IOException e) {
+            // the records in the buffer are lost, the next write starts over with a fresh file handle
+            buffer.clear();
+            closeOut();
+            errorHandler.onError(e);
+        }
+    }
+
+    private void closeOut() {
+        if(out==null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            errorHandler.onError(e);
+        }
+        out = null;
+    }
+
+    private void sync() {
+        syncScheduled = false;
+        write();
+        if(!unsynced || out==null) return;
+        try {
+            out.getChannel().force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            errorHandler.onError(e);
+        }
+    }
+
+    private void drain(FileChannel channel) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void encode(ScoreRecord r, ByteBuffer b) {
+        int start = b.position();
+        b.put(r.kind).putInt(r.level).putInt(r.points).putInt(r.steps).putLong(r.time);
+        crc.reset();
+        crc.update(b.array(), b.arrayOffset() + start, FIELDS_SIZE);
+        b.putInt((int) crc.getValue());
+    }
+
+    /**
+     * reads the record at the position of b, which has to hold a whole one
+     * @return the record, or null if it is damaged
+     */
+    private ScoreRecord decode(ByteBuffer b) {
+        int start = b.position();
+        crc.reset();
+        crc.update(b.array(), b.arrayOffset() + start, FIELDS_SIZE);
+        ScoreRecord r = new ScoreRecord(b.get(), b.getInt(), b.getInt(), b.getInt(), b.getLong());
+        if(b.getInt()!=(int) crc.getValue()) return null;
+        return r;
+    }
+}
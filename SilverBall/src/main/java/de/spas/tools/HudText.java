@@ -0,0 +1,62 @@
+package de.spas.tools;
+
+/**
+ * A fixed prefix followed by a number, formatted into a reused char buffer.
+ * Setting it allocates nothing, the buffer is drawn as it is (see RenderCommands.text()).
+ * set() tells whether the text changed so it only needs to be redrawn then.
+ */
+public class HudText {
+
+    // "-2147483648"
+    private static final int MAX_DIGITS = 11;
+
+    private final char[] chars;
+    private final int prefixLength;
+    private int length;
+    private int value;
+    private boolean valid;
+
+    public HudText(String prefix) {
+        prefixLength = prefix.length();
+        chars = new char[prefixLength + MAX_DIGITS];
+        prefix.getChars(0, prefixLength, chars, 0);
+        length = prefixLength;
+    }
+
+    /**
+     * @return true if the text changed
+     */
+    public boolean set(int value) {
+        if(valid && value==this.value) return false;
+        this.value = value;
+        valid = true;
+        // digits are written from the end of the buffer, then moved behind the prefix
+        long v = Math.abs((long) value);
+        int pos = chars.length;
+        do {
+            chars[--pos] = (char) ('0' + v % 10);
+            v /= 10;
+        } while(v!=0);
+        if(value<0) chars[--pos] = '-';
+        int digits = chars.length - pos;
+        System.arraycopy(chars, pos, chars, prefixLength, digits);
+        length = prefixLength + digits;
+        return true;
+    }
+
+    /**
+     * @return the buffer holding the text, valid up to length()
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,63 @@
+package de.spas.tools;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.os.SystemClock;
+import android.util.SparseIntArray;
+
+import java.util.Arrays;
+
+/**
+ * One SoundPool for the whole app. Sounds are loaded once and played by their raw resource id.
+ * The pool limits the number of simultaneous voices, play() with an interval drops
+ * repeats of the same sound that come in too fast.
+ */
+public class SoundService {
+
+    private final SoundPool soundPool;
+    private final SparseIntArray soundIds = new SparseIntArray();
+    // start time per pool sound id, which are small ascending ints
+    private long[] lastPlayed = new long[0];
+
+    /**
+     * @param maxVoices sounds playing at the same time, the oldest lowest priority one is stopped
+     */
+    public SoundService(int maxVoices) {
+        soundPool = new SoundPool(maxVoices, AudioManager.STREAM_MUSIC, 0);
+    }
+
+    public void load(Context context, int resId) {
+        if(soundIds.indexOfKey(resId)<0) {
+            int id = soundPool.load(context, resId, 1);
+            soundIds.put(resId, id);
+            if(id>=lastPlayed.length) {
+                int old = lastPlayed.length;
+                lastPlayed = Arrays.copyOf(lastPlayed, id+1);
+                Arrays.fill(lastPlayed, old, id+1, Long.MIN_VALUE/2);
+            }
+        }
+    }
+
+    public void play(int resId, int priority) {
+        int id = soundIds.get(resId);
+        if(id!=0) soundPool.play(id, 1, 1, priority, 0, 1f);
+    }
+
+    /**
+     * plays the sound unless it was started less than minInterval milliseconds ago
+     */
+    public synchronized void play(int resId, int priority, long minInterval) {
+        int id = soundIds.get(resId);
+        if(id==0) return;
+        long now = SystemClock.uptimeMillis();
+        if(now - lastPlayed[id] < minInterval) return;
+        lastPlayed[id] = now;
+        soundPool.play(id, 1, 1, priority, 0, 1f);
+    }
+
+    public void release() {
+        soundPool.release();
+        soundIds.clear();
+    }
+}
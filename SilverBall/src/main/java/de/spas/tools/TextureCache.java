@@ -0,0 +1,161 @@
+package de.spas.tools;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Drawable bitmaps by resource name, decoded in the background and kept in
+ * an LRU cache that is bounded by bitmap bytes rather than by count.
+ * Textures are subsampled while decoding to what the size they are drawn at needs, JPEGs
+ * have no alpha and are stored as RGB_565. What is cached for drawing are copies scaled to the
+ * exact tile size, so drawing does not scale. A source bitmap is only kept until it is scaled:
+ * textures preloaded before their tile sizes are known are decoded for the surface size, a
+ * texture asked for at a size is decoded for that size.
+ */
+public class TextureCache {
+
+    private static final String LOG_TAG = "TextureCache";
+    private final Resources resources;
+    private final String packageName;
+    private final LruCache<String,Bitmap> cache;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private volatile int maxWidth;
+    private volatile int maxHeight;
+
+    /**
+     * @param maxBytes budget for all cached bitmaps together
+     * @param maxWidth largest width a texture is drawn at, see setMaxSize()
+     */
+    public TextureCache(Resources resources, String packageName, int maxBytes, int maxWidth, int maxHeight) {
+        this.resources = resources;
+        this.packageName = packageName;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        cache = new LruCache<String,Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * decodes the given textures on a background thread, skipping those already cached.
+     * Textures are loaded in iteration order, so pass the most urgent ones first.
+     */
+    public void preload(Collection<String> names) {
+        if(loader.isShutdown()) return;
+        for(String name : names) {
+            loader.execute(() -> {
+                if(cache.get(name)==null) decode(name);
+            });
+        }
+    }
+
+    /**
+     * makes the copy of a texture scaled to the given size on the background thread
+     */
+    public void preload(String name, int width, int height) {
+        if(loader.isShutdown()) return;
+        loader.execute(() -> get(name, width, height));
+    }
+
+    /**
+     * @return the texture, decoded on the calling thread if it is not cached yet, or null if it does not exist
+     */
+    public Bitmap get(String name) {
+        Bitmap b = cache.get(name);
+        if(b!=null) return b;
+        return decode(name);
+    }
+
+    /**
+     * @return the texture scaled to the given size, made once and cached, or null if it does not exist
+     */
+    public Bitmap get(String name, int width, int height) {
+        if(width<=0 || height<=0) return get(name);
+        String key = name + '@' + width + 'x' + height;
+        Bitmap b = cache.get(key);
+        if(b!=null) return b;
+        // a preloaded source is used once, the scaled copy takes its place in the budget
+        Bitmap source = cache.remove(name);
+        if(source==null) source = decode(name, width, height);
+        if(source==null) return null;
+        b = source.getWidth()==width && source.getHeight()==height ? source
+                : Bitmap.createScaledBitmap(source, width, height, true);
+        cache.put(key, b);
+        return b;
+    }
+
+    /**
+     * Textures decoded later without a tile size are subsampled to no less than this size, usually the size of the surface.
+     * Cached ones are kept.
+     */
+    public void setMaxSize(int width, int height) {
+        maxWidth = width;
+        maxHeight = height;
+    }
+
+    /**
+     * stops the background thread, dropping the textures not loaded yet, and empties the cache.
+     * Call from the thread that preloads, get() still works afterwards.
+     */
+    public void release() {
+        loader.shutdownNow();
+        cache.evictAll();
+    }
+
+    /**
+     * @return bytes of all cached bitmaps
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private Bitmap decode(String name) {
+        Bitmap b = decode(name, maxWidth, maxHeight);
+        if(b!=null) cache.put(name, b);
+        return b;
+    }
+
+    /**
+     * @return the texture subsampled to no less than the required size, not cached, or null if it does not exist
+     */
+    private Bitmap decode(String name, int requiredWidth, int requiredHeight) {
+        int id = resources.getIdentifier(name, "drawable", packageName);
+        Bitmap b = null;
+        if(id!=0) {
+            // density scaling would only blow the texture up, it is scaled to its tile anyway
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inScaled = false;
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, id, options);
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, requiredWidth, requiredHeight);
+            options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            b = BitmapFactory.decodeResource(resources, id, options);
+        }
+        if(b==null) {
+            Log.e(LOG_TAG, "texture not found: " + name);
+            return null;
+        }
+        return b;
+    }
+
+    /**
+     * @return the largest power of two that keeps the decoded bitmap at least as large as required
+     */
+    static int sampleSize(int width, int height, int requiredWidth, int requiredHeight) {
+        int sample = 1;
+        if(requiredWidth<=0 || requiredHeight<=0) return sample;
+        while(width/(sample*2) >= requiredWidth && height/(sample*2) >= requiredHeight) sample *= 2;
+        return sample;
+    }
+}
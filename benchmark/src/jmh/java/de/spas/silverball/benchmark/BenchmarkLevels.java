@@ -0,0 +1,77 @@
+package de.spas.silverball.benchmark;
+
+import com.google.gson.Gson;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+
+/**
+ * Levels used as benchmark parameters: either a level number from levels.json,
+ * "walls" for a level with two obstacle walls (walls.json, not shipped with the game)
+ * or "traps&lt;n&gt;" for a synthetic level with n randomly placed 1x1 traps.
+ */
+public class BenchmarkLevels {
+
+    // physics step of the game, see GameTextureView.FRAME_INTERVAL
+    public static final float TIME_STEP = 0.02f;
+
+    private static final String SYNTHETIC_PREFIX = "traps";
+    private static final String WALLS = "walls";
+    private static LevelPack levelPack;
+
+    public static Level get(String name) {
+        if(name.startsWith(SYNTHETIC_PREFIX)) {
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())));
+        }
+        if(name.equals(WALLS)) return walls();
+        int number = Integer.parseInt(name);
+        for(Level level : getLevelPack().getLevels()) {
+            if(level.getNumber()==number) return level;
+        }
+        throw new IllegalArgumentException("no such level: " + name);
+    }
+
+    public static synchronized LevelPack getLevelPack() {
+        if(levelPack==null) {
+            InputStreamReader reader = new InputStreamReader(
+                    BenchmarkLevels.class.getResourceAsStream("/levels.json"), StandardCharsets.UTF_8);
+            levelPack = new Gson().fromJson(reader, LevelPack.class);
+        }
+        return levelPack;
+    }
+
+    public static Level walls() {
+        InputStreamReader reader = new InputStreamReader(
+                BenchmarkLevels.class.getResourceAsStream("/walls.json"), StandardCharsets.UTF_8);
+        return new Gson().fromJson(reader, Level.class);
+    }
+
+    /**
+     * builds a level with the ball at 1/1, the hole at 15/8 and the given number of traps,
+     * none of them covering the start or the hole cell. The layout is seeded and reproducible.
+     */
+    public static Level synthetic(int traps) {
+        Random random = new Random(traps);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"number\":").append(1000+traps)
+                .append(",\"points\":1000,\"time\":10,")
+                .append("\"ball\":{\"startx\":1,\"starty\":1},")
+                .append("\"hole\":{\"x\":15,\"y\":8},\"traps\":[");
+        for(int i=0; i<traps; i++) {
+            int x, y;
+            do {
+                x = random.nextInt(16);
+                y = random.nextInt(9);
+            } while((x<=1 && y<=1) || (x>=14 && y>=7));
+            if(i>0) json.append(',');
+            json.append("{\"texture\":\"lava\",\"x\":").append(x).append(",\"y\":").append(y)
+                    .append(",\"w\":1,\"h\":1}");
+        }
+        json.append("]}");
+        return new Gson().fromJson(json.toString(), Level.class);
+    }
+}
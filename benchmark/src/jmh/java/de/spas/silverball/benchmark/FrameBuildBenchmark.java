@@ -0,0 +1,124 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.spas.silverball.model.GridRect;
+import de.spas.silverball.model.Obstacle;
+import de.spas.silverball.model.Trap;
+import de.spas.silverball.physics.BallSwarm;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.render.HeadlessBackend;
+import de.spas.silverball.render.RenderCommands;
+
+/**
+ * Builds a frame the way GameTextureView does, with the level tiles drawn directly instead of
+ * from the static layer and a swarm of balls, and replays it into the headless backend.
+ * The counters show draw calls and texture or paint switches per frame, with and without sorting.
+ */
+@State(Scope.Thread)
+public class FrameBuildBenchmark {
+
+    private static final float CELL = 80;
+    private static final int PAINT_HOLE = 0;
+    private static final int PAINT_TEXT = 1;
+    private static final int TEXTURE_BALL = 1;
+
+    @Param({"1", "walls", "traps128"})
+    public String level;
+
+    @Param({"1", "1000"})
+    public int balls;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long drawCalls;
+        public long stateChanges;
+    }
+
+    private final RenderCommands commands = new RenderCommands();
+    private final HeadlessBackend backend = new HeadlessBackend();
+    private de.spas.silverball.model.Level levelData;
+    private BallSwarm swarm;
+    private int[] tileTextures;
+    private final char[] points = "1234".toCharArray();
+
+    @Setup
+    public void setup() {
+        levelData = BenchmarkLevels.get(level);
+        float radius = balls==1 ? Simulation.BALL_RADIUS : 0.1f;
+        swarm = new BallSwarm(BenchmarkLevels.TIME_STEP, balls, radius);
+        swarm.reset(levelData, balls, 1);
+        Map<String, Integer> ids = new HashMap<>();
+        tileTextures = new int[levelData.getTraps().size() + levelData.getObstacles().size()];
+        int t = 0;
+        for(Trap trap : levelData.getTraps()) tileTextures[t++] = textureId(ids, trap.getTexture());
+        for(Obstacle o : levelData.getObstacles()) tileTextures[t++] = textureId(ids, o.getTexture());
+    }
+
+    private static int textureId(Map<String, Integer> ids, String name) {
+        Integer id = ids.get(name);
+        if(id==null) {
+            id = TEXTURE_BALL + 1 + ids.size();
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    private void record() {
+        commands.reset();
+        commands.setLayer(0);
+        commands.clear();
+        commands.circle(PAINT_HOLE, levelData.getHole().getX()*CELL, levelData.getHole().getY()*CELL, Simulation.BALL_RADIUS*CELL);
+        commands.setLayer(1);
+        int t = 0;
+        for(Trap trap : levelData.getTraps()) tile(trap, tileTextures[t++]);
+        for(Obstacle o : levelData.getObstacles()) tile(o, tileTextures[t++]);
+        commands.setLayer(2);
+        float r = swarm.getRadius()*CELL;
+        for(int k=0; k<swarm.getActiveCount(); k++) {
+            int i = swarm.getActive(k);
+            float x = swarm.x[i]*CELL;
+            float y = swarm.y[i]*CELL;
+            commands.bitmap(TEXTURE_BALL, 0, 0, 64, 64, x - r, y - r, x + r, y + r);
+            // a shadow under every ball, interleaving a paint with the texture
+            commands.circle(PAINT_HOLE, x + r*0.2f, y + r*0.2f, r);
+        }
+        commands.setLayer(3);
+        commands.text(PAINT_TEXT, points, points.length, 1180, 40);
+    }
+
+    private void tile(GridRect r, int texture) {
+        commands.bitmap(texture, 0, 0, 63, 63, r.getX()*CELL, r.getY()*CELL,
+                (r.getX() + r.getW())*CELL - 1, (r.getY() + r.getH())*CELL - 1);
+    }
+
+    private int replay(Counters counters) {
+        backend.reset();
+        commands.replay(backend);
+        counters.drawCalls += backend.getDrawCalls();
+        counters.stateChanges += backend.getStateChanges();
+        return backend.getDrawCalls();
+    }
+
+    @Benchmark
+    public int recordSortReplay(Counters counters) {
+        record();
+        commands.sort();
+        return replay(counters);
+    }
+
+    @Benchmark
+    public int recordReplay(Counters counters) {
+        record();
+        return replay(counters);
+    }
+}
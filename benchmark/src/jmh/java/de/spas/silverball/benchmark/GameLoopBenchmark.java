@@ -0,0 +1,63 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.physics.FixedStepLoop;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.physics.VirtualClock;
+
+/**
+ * A whole level played through the fixed step loop on a virtual clock, ticked at 60 Hz
+ * like on the device but as fast as the CPU allows. The ball is tilted towards the hole.
+ */
+@State(Scope.Thread)
+public class GameLoopBenchmark {
+
+    private static final long TICK_NANOS = 16_666_667;
+    private static final long STEP_NANOS = 20_000_000;
+
+    @Param({"1", "4", "walls", "traps128"})
+    public String level;
+
+    private Level levelData;
+    private Simulation simulation;
+    private VirtualClock clock;
+    private FixedStepLoop loop;
+    private long maxSteps;
+    private Simulation.Event event;
+
+    @Setup
+    public void setup() {
+        levelData = BenchmarkLevels.get(level);
+        simulation = new Simulation(STEP_NANOS * 1e-9f);
+        clock = new VirtualClock();
+        loop = new FixedStepLoop(clock, STEP_NANOS, 5);
+        maxSteps = levelData.getTime() * 1_000_000_000L / STEP_NANOS;
+    }
+
+    @Benchmark
+    public long playLevel() {
+        simulation.reset(levelData);
+        loop.reset();
+        event = Simulation.Event.NONE;
+        FixedStepLoop.Stepper stepper = time -> step();
+        while(simulation.getSteps()<maxSteps && event!=Simulation.Event.HOLE && event!=Simulation.Event.TRAP) {
+            clock.advance(TICK_NANOS);
+            loop.advance(stepper);
+        }
+        return simulation.getSteps();
+    }
+
+    private boolean step() {
+        float dx = levelData.getHole().getX() - simulation.getLocation().x;
+        float dy = levelData.getHole().getY() - simulation.getLocation().y;
+        simulation.setAcceleration(dx*10, dy*10);
+        event = simulation.step();
+        return event!=Simulation.Event.HOLE && event!=Simulation.Event.TRAP;
+    }
+}
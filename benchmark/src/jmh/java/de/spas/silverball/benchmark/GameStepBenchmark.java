@@ -0,0 +1,40 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * One physics tick as done by GameEngine.gameLoop. The tilt is rotated slowly so the
+ * ball keeps rolling across the level and bouncing off the walls. Trap and hole events
+ * are ignored so the ball keeps moving for the whole measurement.
+ */
+@State(Scope.Thread)
+public class GameStepBenchmark {
+
+    private static final float ACCELERATION = 12f * 9.81f * 0.3f;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "walls", "traps16", "traps128", "traps512"})
+    public String level;
+
+    private Simulation simulation;
+    private float angle;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void setup() {
+        simulation = new Simulation(BenchmarkLevels.TIME_STEP);
+        simulation.reset(BenchmarkLevels.get(level));
+        angle = 0;
+    }
+
+    @Benchmark
+    public Simulation.Event step() {
+        angle += 0.01f;
+        simulation.setAcceleration((float) Math.cos(angle) * ACCELERATION, (float) Math.sin(angle) * ACCELERATION);
+        return simulation.step();
+    }
+}
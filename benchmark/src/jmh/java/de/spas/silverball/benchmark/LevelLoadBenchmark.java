@@ -0,0 +1,69 @@
+package de.spas.silverball.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.spas.silverball.io.BinaryLevelPack;
+import de.spas.silverball.io.JsonLevelIndex;
+import de.spas.silverball.io.LevelCompiler;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+
+/**
+ * Loading every level of a pack: Gson on levels.json, the streaming JSON index and
+ * the compiled binary pack. The pack is levels.json repeated "copies" times.
+ * Compare the gc profiler's alloc.rate.norm to see the allocations per load.
+ */
+@State(Scope.Thread)
+public class LevelLoadBenchmark {
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private final Gson gson = new Gson();
+    private String json;
+    private byte[] jsonBytes;
+    private ByteBuffer binary;
+
+    @Setup
+    public void setup() throws IOException {
+        LevelPack source = BenchmarkLevels.getLevelPack();
+        List<Level> levels = new ArrayList<>();
+        for(int i=0; i<copies; i++) levels.addAll(source.getLevels());
+        LevelPack pack = new LevelPack(source.getName(), levels);
+        json = gson.toJson(pack);
+        jsonBytes = json.getBytes("UTF-8");
+        byte[] compiled = LevelCompiler.compile(pack);
+        binary = ByteBuffer.allocateDirect(compiled.length);
+        binary.put(compiled).flip();
+    }
+
+    @Benchmark
+    public LevelPack gson() {
+        return gson.fromJson(json, LevelPack.class);
+    }
+
+    @Benchmark
+    public void jsonIndex(Blackhole bh) throws IOException {
+        JsonLevelIndex index = JsonLevelIndex.build(() -> new ByteArrayInputStream(jsonBytes));
+        for(int i=0; i<index.getLevelCount(); i++) bh.consume(index.getLevel(i));
+    }
+
+    @Benchmark
+    public void binary(Blackhole bh) throws IOException {
+        BinaryLevelPack pack = new BinaryLevelPack(binary);
+        for(int i=0; i<pack.getLevelCount(); i++) bh.consume(pack.getLevel(i));
+    }
+}
@@ -0,0 +1,69 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.physics.InputRing;
+import de.spas.silverball.physics.LowPassFilter;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.replay.ReplayRecorder;
+
+/**
+ * The Android-free part of going from one level to the next, cycling through levels.json.
+ * freshSession builds the physics state anew as GameEngine did per level,
+ * reusedSession resets the state of one long-lived engine as loadLevel() does.
+ * Compare the gc profiler's alloc.rate.norm as well.
+ */
+@State(Scope.Thread)
+public class LevelSwitchBenchmark {
+
+    private static final int INPUT_CAPACITY = 64;
+    private static final float INPUT_CUTOFF_HZ = 5f;
+
+    private List<Level> levels;
+    private int next;
+    private Simulation simulation;
+    private ReplayRecorder recorder;
+
+    @Setup
+    public void setup() {
+        levels = BenchmarkLevels.getLevelPack().getLevels();
+        simulation = new Simulation(BenchmarkLevels.TIME_STEP);
+        recorder = new ReplayRecorder();
+    }
+
+    @Benchmark
+    public void freshSession(Blackhole bh) {
+        Level level = nextLevel();
+        Simulation s = new Simulation(BenchmarkLevels.TIME_STEP);
+        ReplayRecorder r = new ReplayRecorder();
+        bh.consume(new LowPassFilter(INPUT_CUTOFF_HZ));
+        bh.consume(new InputRing(INPUT_CAPACITY));
+        bh.consume(new Vector2());
+        r.begin(level.getNumber(), BenchmarkLevels.TIME_STEP);
+        s.reset(level);
+        bh.consume(r);
+        bh.consume(s);
+    }
+
+    @Benchmark
+    public Object reusedSession() {
+        Level level = nextLevel();
+        recorder.begin(level.getNumber(), BenchmarkLevels.TIME_STEP);
+        simulation.reset(level);
+        return simulation;
+    }
+
+    private Level nextLevel() {
+        Level level = levels.get(next);
+        next = (next+1) % levels.size();
+        return level;
+    }
+}
@@ -0,0 +1,64 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.math.Matrix2;
+import de.spas.math.Vector2;
+
+/**
+ * Cost of the vector operations used once or more per physics step.
+ */
+@State(Scope.Thread)
+public class MathBenchmark {
+
+    private Vector2 a, b, dest;
+    private Matrix2 bounce;
+
+    @Setup
+    public void setup() {
+        a = new Vector2(1.5f, 2.5f);
+        b = new Vector2(0.001f, -0.002f);
+        dest = new Vector2();
+        bounce = new Matrix2();
+        bounce.unity();
+        bounce.xx = -0.25f;
+    }
+
+    @Benchmark
+    public Vector2 vectorAdd() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Vector2 vectorAddScaled() {
+        return a.add(b, 0.02f);
+    }
+
+    @Benchmark
+    public float vectorLength() {
+        return a.length();
+    }
+
+    @Benchmark
+    public Vector2 matrixMultiply() {
+        return bounce.multiply(a);
+    }
+
+    @Benchmark
+    public Vector2 matrixMultiplyInto() {
+        return bounce.multiplyInto(a, dest);
+    }
+
+    @Benchmark
+    public float vectorDot() {
+        return a.dot(b);
+    }
+
+    @Benchmark
+    public Vector2 vectorNormalize() {
+        return a.normalize();
+    }
+}
@@ -0,0 +1,141 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * Speed against accuracy of the adaptive substeps. One operation is a whole scripted game:
+ * the tilt turns steadily from a seeded start angle until the ball falls into a trap or the
+ * hole or the level time is up. The reference plays the same game with 64 plain steps per step.
+ * The counters give the substeps taken, the steps that passed over a trap or the hole without
+ * noticing it (the straight line between the positions before and after is probed, steps
+ * that bounced are left out) and the games whose outcome differs from the reference: another
+ * event, or the same more than a step apart. The latter also counts the drift of the coarser
+ * integration, even a perfect collision check does not get it to zero.
+ * maxSubsteps=1 is the plain step. tilt is the share of full tilt, 0.2 is careful play,
+ * 1 throws the ball around.
+ */
+@State(Scope.Thread)
+public class SubstepBenchmark {
+
+    private static final float FULL_TILT = 12f * 9.81f;
+    private static final int SCRIPTS = 64;
+    private static final int REFERENCE_SUBSTEPS = 64;
+    private static final float TURN_PER_STEP = 0.03f;
+    private static final int PROBES = 16;
+
+    @Param({"1", "walls", "traps128"})
+    public String level;
+
+    @Param({"0.2", "1"})
+    public float tilt;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int maxSubsteps;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long steps;
+        public long substeps;
+        public long missedCrossings;
+        public long wrongOutcomes;
+    }
+
+    private Level levelData;
+    private int maxSteps;
+    private Simulation simulation;
+    private final Simulation.Event[] referenceEvents = new Simulation.Event[SCRIPTS];
+    private final long[] referenceSteps = new long[SCRIPTS];
+    private final int[] missed = new int[SCRIPTS];
+    private int script;
+
+    @Setup
+    public void setup() {
+        levelData = BenchmarkLevels.get(level);
+        maxSteps = Math.round(levelData.getTime() / BenchmarkLevels.TIME_STEP);
+        simulation = new Simulation(BenchmarkLevels.TIME_STEP);
+        simulation.setMaxSubsteps(maxSubsteps);
+        Simulation reference = new Simulation(BenchmarkLevels.TIME_STEP / REFERENCE_SUBSTEPS);
+        reference.setMaxSubsteps(1);
+        for(int i=0; i<SCRIPTS; i++) {
+            reference.reset(levelData);
+            Simulation.Event event = Simulation.Event.NONE;
+            long step = 0;
+            while(step<maxSteps && !isEnd(event)) {
+                step++;
+                tiltFor(reference, i, step);
+                for(int k=0; k<REFERENCE_SUBSTEPS && !isEnd(event); k++) event = reference.step();
+            }
+            referenceEvents[i] = isEnd(event) ? event : Simulation.Event.NONE;
+            referenceSteps[i] = step;
+            missed[i] = countMissed(i);
+        }
+    }
+
+    /**
+     * plays a script once, outside the measurement, probing every step for skipped traps and the hole
+     */
+    private int countMissed(int script) {
+        Simulation s = simulation;
+        s.reset(levelData);
+        Simulation.Event event = Simulation.Event.NONE;
+        int count = 0;
+        for(long step=1; step<=maxSteps && !isEnd(event); step++) {
+            tiltFor(s, script, step);
+            event = s.step();
+            if(event==Simulation.Event.NONE && crossesTrapOrHole(s)) count++;
+        }
+        return count;
+    }
+
+    private boolean crossesTrapOrHole(Simulation s) {
+        float x0 = s.getPreviousPosition().x, y0 = s.getPreviousPosition().y;
+        float dx = s.getLocation().x - x0, dy = s.getLocation().y - y0;
+        for(int p=1; p<PROBES; p++) {
+            float x = x0 + dx*p/PROBES, y = y0 + dy*p/PROBES;
+            if(s.findTrap(x, y)!=null) return true;
+            float hx = x - levelData.getHole().getX(), hy = y - levelData.getHole().getY();
+            if(hx*hx + hy*hy < Simulation.BALL_RADIUS*Simulation.BALL_RADIUS) return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    public Simulation.Event game(Counters counters) {
+        int i = script;
+        script = (script+1) % SCRIPTS;
+        Simulation s = simulation;
+        s.reset(levelData);
+        Simulation.Event event = Simulation.Event.NONE;
+        long step = 0;
+        while(step<maxSteps && !isEnd(event)) {
+            step++;
+            tiltFor(s, i, step);
+            event = s.step();
+            counters.substeps += s.getSubsteps();
+        }
+        counters.steps += step;
+        counters.missedCrossings += missed[i];
+        if(!isEnd(event)) event = Simulation.Event.NONE;
+        if(event!=referenceEvents[i] || Math.abs(step - referenceSteps[i]) > 1) counters.wrongOutcomes++;
+        return event;
+    }
+
+    private void tiltFor(Simulation s, int script, long step) {
+        double angle = script * (2*Math.PI / SCRIPTS) + step * TURN_PER_STEP;
+        float a = FULL_TILT * tilt;
+        s.setAcceleration((float) Math.cos(angle) * a, (float) Math.sin(angle) * a);
+    }
+
+    private static boolean isEnd(Simulation.Event event) {
+        return event==Simulation.Event.TRAP || event==Simulation.Event.HOLE;
+    }
+}
@@ -0,0 +1,52 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.silverball.physics.BallSwarm;
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * One physics tick of the many-ball mode. The ball radius shrinks with the count so the
+ * balls cover about a quarter of the field. The tilt rotates as in GameStepBenchmark;
+ * once half of the balls are gone into traps or the hole the swarm is spawned again.
+ * At 50 Hz a step has to stay well below 20 ms.
+ */
+@State(Scope.Thread)
+public class SwarmStepBenchmark {
+
+    private static final float ACCELERATION = 12f * 9.81f * 0.3f;
+    private static final float COVERAGE = 0.25f;
+
+    @Param({"100", "1000", "4000"})
+    public int balls;
+
+    @Param({"1", "walls"})
+    public String level;
+
+    private BallSwarm swarm;
+    private de.spas.silverball.model.Level levelData;
+    private float angle;
+    private long seed;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void setup() {
+        float radius = (float) Math.sqrt(COVERAGE * Simulation.FIELD_WIDTH * Simulation.FIELD_HEIGHT / (Math.PI * balls));
+        swarm = new BallSwarm(BenchmarkLevels.TIME_STEP, balls, radius);
+        levelData = BenchmarkLevels.get(level);
+        swarm.reset(levelData, balls, seed++);
+        angle = 0;
+    }
+
+    @Benchmark
+    public int step() {
+        if(swarm.getActiveCount() < swarm.getCount()/2) swarm.reset(levelData, balls, seed++);
+        angle += 0.01f;
+        swarm.setAcceleration((float) Math.cos(angle) * ACCELERATION, (float) Math.sin(angle) * ACCELERATION);
+        swarm.step();
+        return swarm.getContacts();
+    }
+}
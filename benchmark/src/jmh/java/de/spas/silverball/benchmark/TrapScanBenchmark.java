@@ -0,0 +1,59 @@
+package de.spas.silverball.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.Trap;
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * Cost of the "is the ball over a trap" query, which runs once per physics step.
+ * Probes walk over the whole playfield so hits and misses are mixed.
+ * findTrap looks the point up in the distance field of Simulation, linearScan is the former per-frame
+ * loop over all traps, kept as baseline. The cell grid only indexes obstacles and is not involved.
+ */
+@State(Scope.Thread)
+public class TrapScanBenchmark {
+
+    private static final int PROBES = 64;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "walls", "traps16", "traps128", "traps512"})
+    public String level;
+
+    private Simulation simulation;
+    private Level levelData;
+    private final float[] probeX = new float[PROBES];
+    private final float[] probeY = new float[PROBES];
+    private int probe;
+
+    @Setup
+    public void setup() {
+        simulation = new Simulation(BenchmarkLevels.TIME_STEP);
+        levelData = BenchmarkLevels.get(level);
+        simulation.reset(levelData);
+        for(int i=0; i<PROBES; i++) {
+            probeX[i] = (i*7 % 16) + 0.5f;
+            probeY[i] = (i*5 % 9) + 0.5f;
+        }
+    }
+
+    @Benchmark
+    public Trap findTrap() {
+        probe = (probe+1) % PROBES;
+        return simulation.findTrap(probeX[probe], probeY[probe]);
+    }
+
+    @Benchmark
+    public Trap linearScan() {
+        probe = (probe+1) % PROBES;
+        float x = probeX[probe], y = probeY[probe];
+        for(Trap t : levelData.getTraps()) {
+            if(x >= t.getX() && x < t.getX()+t.getW() && y >= t.getY() && y < t.getY()+t.getH()) return t;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,157 @@
+package de.spas.silverball.io;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.spas.silverball.model.Ball;
+import de.spas.silverball.model.Hole;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.model.Obstacle;
+import de.spas.silverball.model.Trap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * levels.json compiled by LevelCompiler and read back by BinaryLevelPack must give the levels Gson parses.
+ * Load time is measured by LevelLoadBenchmark, here the allocations of a load are compared.
+ */
+public class BinaryLevelPackTest {
+
+    // the shapes and obstacles levels.json does not use yet
+    private static final String SHAPES_LEVEL = "{\"number\":20,\"points\":1000,\"time\":10,"
+            + "\"ball\":{\"startx\":1,\"starty\":1},\"hole\":{\"x\":15,\"y\":8},\"traps\":["
+            + "{\"texture\":\"lava\",\"x\":3,\"y\":3,\"w\":2,\"h\":2,\"shape\":\"circle\"},"
+            + "{\"texture\":\"water\",\"x\":6,\"y\":2,\"w\":3,\"h\":4,\"shape\":\"polygon\",\"points\":[6,2,8.5,3.25,6.125,5.75]}],"
+            + "\"obstacles\":[{\"type\":\"wall\",\"texture\":\"wood3v\",\"x\":11,\"y\":0,\"w\":1,\"h\":6},"
+            + "{\"texture\":\"metal1v\",\"x\":12,\"y\":6,\"w\":2,\"h\":1}]}";
+    // copies of levels.json for the allocation comparison, the fixed cost of Gson would dominate a single one
+    private static final int COPIES = 50;
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void roundTrip() throws IOException {
+        LevelPack pack = pack(1);
+        BinaryLevelPack binary = new BinaryLevelPack(ByteBuffer.wrap(LevelCompiler.compile(pack)));
+        assertEquals(pack.getName(), binary.getName());
+        assertEquals(pack.getLevels().size(), binary.getLevelCount());
+        assertEquals(pack.getTextures(), binary.getTextures());
+        for(int i=0; i<binary.getLevelCount(); i++) assertLevelEquals(pack.getLevels().get(i), binary.getLevel(i));
+    }
+
+    @Test
+    public void countsAndLengthsAboveShortRange() throws IOException {
+        // 16 bit counts are unsigned, read signed they would be negative
+        char[] name = new char[40000];
+        Arrays.fill(name, 'x');
+        String longTexture = new String(name);
+        List<Trap> traps = new ArrayList<>();
+        for(int i=0; i<40000; i++) traps.add(new Trap(i%2==0 ? "lava" : longTexture, i%16, i%9, 1, 1));
+        Level level = new Level(30, new Ball(0, 0), new Hole(15, 8), 100, 10, traps, new ArrayList<Obstacle>());
+        LevelPack pack = new LevelPack("big", Arrays.asList(level));
+        BinaryLevelPack binary = new BinaryLevelPack(ByteBuffer.wrap(LevelCompiler.compile(pack)));
+        assertLevelEquals(level, binary.getLevel(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTooManyTraps() throws IOException {
+        List<Trap> traps = new ArrayList<>();
+        for(int i=0; i<0x10000; i++) traps.add(new Trap("lava", 1, 1, 1, 1));
+        Level level = new Level(31, new Ball(0, 0), new Hole(15, 8), 100, 10, traps, new ArrayList<Obstacle>());
+        LevelCompiler.compile(new LevelPack("big", Arrays.asList(level)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTooLongName() throws IOException {
+        char[] name = new char[0x10000];
+        Arrays.fill(name, 'x');
+        LevelCompiler.compile(new LevelPack(new String(name), new ArrayList<Level>()));
+    }
+
+    @Test
+    public void binaryLoadAllocatesLessThanGson() throws IOException {
+        LevelPack pack = pack(COPIES);
+        String json = gson.toJson(pack);
+        ByteBuffer compiled = ByteBuffer.wrap(LevelCompiler.compile(pack));
+        // warm up both paths so class loading is not counted
+        loadGson(json);
+        loadBinary(compiled);
+        long gsonBytes = allocatedBy(() -> loadGson(json));
+        long binaryBytes = allocatedBy(() -> loadBinary(compiled));
+        assertTrue("binary " + binaryBytes + " bytes, Gson " + gsonBytes, binaryBytes < gsonBytes/2);
+    }
+
+    private void loadGson(String json) {
+        gson.fromJson(json, LevelPack.class).getLevels();
+    }
+
+    private static void loadBinary(ByteBuffer compiled) {
+        try {
+            BinaryLevelPack binary = new BinaryLevelPack(compiled);
+            for(int i=0; i<binary.getLevelCount(); i++) binary.getLevel(i);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static long allocatedBy(Runnable load) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        load.run();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    /**
+     * levels.json, count times, and a level with circle and polygon traps and obstacles
+     */
+    private LevelPack pack(int count) {
+        LevelPack source = gson.fromJson(new InputStreamReader(
+                getClass().getResourceAsStream("/levels.json"), StandardCharsets.UTF_8), LevelPack.class);
+        List<Level> levels = new ArrayList<>();
+        for(int i=0; i<count; i++) levels.addAll(source.getLevels());
+        levels.add(gson.fromJson(SHAPES_LEVEL, Level.class));
+        return new LevelPack(source.getName(), levels);
+    }
+
+    private static void assertLevelEquals(Level expected, Level actual) {
+        String name = "level " + expected.getNumber();
+        assertEquals(name, expected.getNumber(), actual.getNumber());
+        assertEquals(name, expected.getPoints(), actual.getPoints());
+        assertEquals(name, expected.getTime(), actual.getTime());
+        assertEquals(name, expected.getBall().getStartx(), actual.getBall().getStartx());
+        assertEquals(name, expected.getBall().getStarty(), actual.getBall().getStarty());
+        assertEquals(name, expected.getHole().getX(), actual.getHole().getX());
+        assertEquals(name, expected.getHole().getY(), actual.getHole().getY());
+        assertEquals(name, expected.getTraps().size(), actual.getTraps().size());
+        for(int i=0; i<expected.getTraps().size(); i++) {
+            Trap e = expected.getTraps().get(i), a = actual.getTraps().get(i);
+            String trap = name + " trap " + i;
+            assertEquals(trap, e.getTexture(), a.getTexture());
+            assertEquals(trap, Arrays.asList(e.getX(), e.getY(), e.getW(), e.getH()), Arrays.asList(a.getX(), a.getY(), a.getW(), a.getH()));
+            assertEquals(trap, e.getShape(), a.getShape());
+            if(e.getPoints()!=null) assertArrayEquals(trap, e.getPoints(), a.getPoints(), 0.5f/BinaryLevelPack.POINT_SCALE);
+        }
+        assertEquals(name, expected.getObstacles().size(), actual.getObstacles().size());
+        for(int i=0; i<expected.getObstacles().size(); i++) {
+            Obstacle e = expected.getObstacles().get(i), a = actual.getObstacles().get(i);
+            String obstacle = name + " obstacle " + i;
+            assertEquals(obstacle, e.getType(), a.getType());
+            assertEquals(obstacle, e.getTexture(), a.getTexture());
+            assertEquals(obstacle, Arrays.asList(e.getX(), e.getY(), e.getW(), e.getH()), Arrays.asList(a.getX(), a.getY(), a.getW(), a.getH()));
+        }
+    }
+}
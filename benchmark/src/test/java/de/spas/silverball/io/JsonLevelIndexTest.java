@@ -0,0 +1,75 @@
+package de.spas.silverball.io;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The byte scanner of JsonLevelIndex must find the same pack Gson parses, also with names outside ASCII.
+ */
+public class JsonLevelIndexTest {
+
+    // multi-byte names before and inside the levels, so byte and char offsets differ
+    private static final String PACK = "{\"name\":\"Gr\u00fc\u00dfe \\\"Kugel\\\" \ud83c\udfb1\",\"levels\":["
+            + "{\"number\":1,\"points\":1000,\"time\":10,\"ball\":{\"startx\":1,\"starty\":1},\"hole\":{\"x\":15,\"y\":8},"
+            + "\"traps\":[{\"texture\":\"lava_\u00e4\",\"x\":3,\"y\":3,\"w\":2,\"h\":2}],\"obstacles\":[]},"
+            + "{\"number\":2,\"points\":2000,\"time\":10,\"ball\":{\"startx\":1,\"starty\":1},\"hole\":{\"x\":15,\"y\":8},"
+            + "\"traps\":[{\"texture\":\"\u6c34\",\"x\":7,\"y\":4,\"w\":2,\"h\":2},"
+            + "{\"texture\":\"\\u00e9t\\u00e9\",\"x\":9,\"y\":4,\"w\":1,\"h\":1}],"
+            + "\"obstacles\":[{\"texture\":\"lava_\u00e4\",\"x\":11,\"y\":0,\"w\":1,\"h\":6}]}]}";
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void decodesNonAsciiNames() throws IOException {
+        byte[] json = PACK.getBytes(StandardCharsets.UTF_8);
+        JsonLevelIndex index = JsonLevelIndex.build(() -> new ByteArrayInputStream(json));
+        assertEquals("Gr\u00fc\u00dfe \"Kugel\" \ud83c\udfb1", index.getName());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("lava_\u00e4", "\u6c34", "\u00e9t\u00e9")), index.getTextures());
+        assertPackEquals(gson.fromJson(PACK, LevelPack.class), index);
+    }
+
+    @Test
+    public void matchesGsonOnLevelsJson() throws IOException {
+        byte[] json = read("/levels.json");
+        JsonLevelIndex index = JsonLevelIndex.build(() -> new ByteArrayInputStream(json));
+        LevelPack pack = gson.fromJson(new String(json, StandardCharsets.UTF_8), LevelPack.class);
+        assertEquals(pack.getName(), index.getName());
+        assertEquals(pack.getTextures(), index.getTextures());
+        assertPackEquals(pack, index);
+    }
+
+    private void assertPackEquals(LevelPack pack, JsonLevelIndex index) throws IOException {
+        assertEquals(pack.getLevels().size(), index.getLevelCount());
+        // out of order, so the cached level is not simply the next one
+        for(int i=index.getLevelCount()-1; i>=0; i--) {
+            Level expected = pack.getLevels().get(i);
+            assertEquals(gson.toJson(expected), gson.toJson(index.getLevel(i)));
+            assertEquals(expected.getTextures(), index.getLevel(i).getTextures());
+        }
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(InputStream in = JsonLevelIndexTest.class.getResourceAsStream(resource)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while((n = in.read(buffer))>0) out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,79 @@
+package de.spas.silverball.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Percentiles of Histogram against the exact percentiles of the recorded values.
+ */
+public class HistogramTest {
+
+    @Test
+    public void exactBelowSixteen() {
+        Histogram h = new Histogram();
+        for(int v=0; v<16; v++) h.record(v);
+        assertEquals(0, h.percentile(0));
+        assertEquals(7, h.percentile(0.5));
+        assertEquals(14, h.percentile(0.9));
+        assertEquals(15, h.percentile(1));
+        assertEquals(7.5, h.getMean(), 0);
+    }
+
+    @Test
+    public void withinBucketAccuracy() {
+        Random random = new Random(11);
+        Histogram h = new Histogram();
+        long[] values = new long[10_000];
+        for(int i=0; i<values.length; i++) {
+            // spread over many powers of two, like frame times in nanoseconds
+            values[i] = 16 + (long) Math.pow(2, random.nextDouble()*40);
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for(double p : new double[]{0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long exact = values[(int) Math.ceil(p*values.length) - 1];
+            long estimate = h.percentile(p);
+            // the upper bound of the bucket: never below, at most one sixteenth above
+            assertTrue(p + ": " + estimate + " < " + exact, estimate>=exact);
+            assertTrue(p + ": " + estimate + " too far above " + exact, estimate<=exact + exact/16);
+        }
+        assertEquals(values[values.length-1], h.getMax());
+        assertEquals(values.length, h.getCount());
+    }
+
+    @Test
+    public void neverAboveMax() {
+        Histogram h = new Histogram();
+        h.record(1000);
+        assertEquals(1000, h.percentile(0.99));
+        h.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, h.percentile(1));
+    }
+
+    @Test
+    public void negativeCountsAsZero() {
+        Histogram h = new Histogram();
+        h.record(-5);
+        assertEquals(0, h.percentile(1));
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void resetEmpties() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.percentile(0.5));
+        h.record(123_456);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getMean(), 0);
+        assertEquals(0, h.percentile(0.5));
+        h.record(3);
+        assertEquals(3, h.percentile(0.5));
+    }
+}
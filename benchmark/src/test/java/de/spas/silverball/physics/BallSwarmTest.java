@@ -0,0 +1,54 @@
+package de.spas.silverball.physics;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import de.spas.silverball.model.Level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BallSwarmTest {
+
+    private static final float TIME_STEP = 0.02f;
+    // traps cover the left half of the playfield
+    private static final Level LEVEL = new Gson().fromJson("{\"number\":1,\"points\":1000,\"time\":10,"
+            + "\"ball\":{\"startx\":12,\"starty\":4},\"hole\":{\"x\":15,\"y\":8},"
+            + "\"traps\":[{\"texture\":\"lava\",\"x\":0,\"y\":0,\"w\":8,\"h\":9}]}", Level.class);
+
+    @Test
+    public void spawnsClearOfTrapsAndEachOther() {
+        BallSwarm swarm = new BallSwarm(TIME_STEP, 200, 0.2f);
+        assertEquals(200, swarm.reset(LEVEL, 200, 1));
+        assertSpawned(swarm);
+    }
+
+    @Test
+    public void leavesOutBallsThatDoNotFit() {
+        // big balls on the free half: far fewer than 100 fit
+        BallSwarm swarm = new BallSwarm(TIME_STEP, 100, 0.9f);
+        int placed = swarm.reset(LEVEL, 100, 1);
+        assertTrue("placed " + placed, placed>0 && placed<100);
+        assertEquals(placed, swarm.getCount());
+        assertEquals(placed, swarm.getActiveCount());
+        assertSpawned(swarm);
+    }
+
+    private static void assertSpawned(BallSwarm swarm) {
+        Simulation simulation = new Simulation(TIME_STEP);
+        simulation.reset(LEVEL);
+        float r = swarm.getRadius();
+        for(int k=0; k<swarm.getActiveCount(); k++) {
+            int i = swarm.getActive(k);
+            assertNull("ball " + i + " in a trap", simulation.findTrap(swarm.x[i], swarm.y[i]));
+            for(int m=k+1; m<swarm.getActiveCount(); m++) {
+                int j = swarm.getActive(m);
+                float dx = swarm.x[j] - swarm.x[i];
+                float dy = swarm.y[j] - swarm.y[i];
+                assertTrue("balls " + i + " and " + j + " overlap", dx*dx + dy*dy >= 4*r*r);
+            }
+        }
+    }
+}
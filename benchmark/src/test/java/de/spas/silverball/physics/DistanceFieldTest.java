@@ -0,0 +1,112 @@
+package de.spas.silverball.physics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.spas.math.Vector2;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DistanceField on a 16x9 area with the sampling of Simulation, checked against the shapes themselves.
+ */
+public class DistanceFieldTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 9;
+    private static final int SAMPLES = Simulation.SAMPLES_PER_CELL;
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void distanceAlongEdges() {
+        DistanceField field = build(new RectShape(4, 2, 8, 6));
+        assertEquals(-1, field.distance(5, 4), EPSILON);
+        assertEquals(0, field.distance(4, 4), EPSILON);
+        assertEquals(0.5f, field.distance(8.5f, 4), EPSILON);
+        // beyond the band only the band is known
+        assertEquals(DistanceField.BAND, field.distance(12, 4), 0);
+    }
+
+    @Test
+    public void normalPointsAway() {
+        DistanceField field = build(new RectShape(4, 2, 8, 6));
+        Vector2 n = field.normal(8.5f, 4, new Vector2());
+        assertEquals(1, n.x, EPSILON);
+        assertEquals(0, n.y, EPSILON);
+        n = field.normal(6, 1.75f, n);
+        assertEquals(0, n.x, EPSILON);
+        assertEquals(-1, n.y, EPSILON);
+    }
+
+    @Test
+    public void findsSmallShapeNextToLargeOne() {
+        // a trap smaller than the sample spacing right next to a wall, every sample around it is nearer the wall
+        // (samples at 6 and 6.125, 4 and 4.125 with 8 per cell)
+        Shape wall = new RectShape(2, 2, 6.06f, 6);
+        Shape small = new CircleShape(6.07f, 4.0625f, 0.008f);
+        DistanceField field = build(wall, small);
+        assertEquals(1, field.find(6.07f, 4.0625f));
+        assertEquals(0, field.find(5, 4));
+        assertEquals(DistanceField.NONE, field.find(6.07f, 4.1f));
+        assertEquals(DistanceField.NONE, field.find(7, 4));
+    }
+
+    @Test
+    public void firstInListOrderWhereShapesOverlap() {
+        DistanceField field = build(new RectShape(2, 2, 6, 6), new RectShape(3, 3, 5, 5));
+        assertEquals(0, field.find(4, 4));
+        field = build(new RectShape(3, 3, 5, 5), new RectShape(2, 2, 6, 6));
+        assertEquals(0, field.find(4, 4));
+        assertEquals(1, field.find(2.5f, 2.5f));
+    }
+
+    @Test
+    public void findMatchesShapes() {
+        // many small and large shapes of every kind, probed at random points against a linear scan
+        Random random = new Random(7);
+        Shape[] shapes = new Shape[60];
+        for(int i=0; i<shapes.length; i++) {
+            float x = random.nextFloat()*WIDTH, y = random.nextFloat()*HEIGHT;
+            float size = i%3==0 ? random.nextFloat()*0.1f + 0.01f : random.nextFloat()*2 + 0.1f;
+            switch(i%3) {
+                case 0:
+                    shapes[i] = new CircleShape(x, y, size);
+                    break;
+                case 1:
+                    shapes[i] = new RectShape(x, y, x + size, y + size*0.5f);
+                    break;
+                default:
+                    shapes[i] = new PolygonShape(new float[]{x, y, x + size, y + size*0.2f, x + size*0.3f, y + size});
+            }
+        }
+        DistanceField field = build(shapes);
+        for(int p=0; p<200_000; p++) {
+            float x = random.nextFloat()*WIDTH, y = random.nextFloat()*HEIGHT;
+            int expected = DistanceField.NONE;
+            for(int s=0; s<shapes.length; s++) {
+                if(shapes[s].contains(x, y)) {
+                    expected = s;
+                    break;
+                }
+            }
+            assertEquals("at " + x + "," + y, expected, field.find(x, y));
+        }
+    }
+
+    @Test
+    public void rebuildForgetsShapes() {
+        DistanceField field = build(new RectShape(2, 2, 6, 6));
+        field.build(Arrays.asList(new RectShape(10, 2, 12, 4)));
+        assertEquals(DistanceField.NONE, field.find(4, 4));
+        assertEquals(0, field.find(11, 3));
+        assertEquals(DistanceField.BAND, field.distance(4, 4), 0);
+    }
+
+    private static DistanceField build(Shape... shapes) {
+        DistanceField field = new DistanceField(WIDTH, HEIGHT, SAMPLES);
+        field.build(Arrays.asList(shapes));
+        return field;
+    }
+}
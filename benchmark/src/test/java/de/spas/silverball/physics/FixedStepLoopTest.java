@@ -0,0 +1,96 @@
+package de.spas.silverball.physics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FixedStepLoop driven by a VirtualClock, so ticks of any length are played instantly.
+ */
+public class FixedStepLoopTest {
+
+    private static final long STEP = 20_000_000L;
+    private static final int MAX_STEPS = 5;
+
+    private final VirtualClock clock = new VirtualClock();
+    private FixedStepLoop loop;
+    // the times passed to step()
+    private final List<Long> steps = new ArrayList<>();
+    private final FixedStepLoop.Stepper recorder = time -> steps.add(time);
+
+    @Before
+    public void setUp() {
+        loop = new FixedStepLoop(clock, STEP, MAX_STEPS);
+    }
+
+    @Test
+    public void carriesLeftoverTime() {
+        clock.advance(STEP*3/2);
+        assertEquals(1, loop.advance(recorder));
+        // the half step left over makes the next one due after another half
+        clock.advance(STEP/2);
+        assertEquals(1, loop.advance(recorder));
+        clock.advance(STEP/4);
+        assertEquals(0, loop.advance(recorder));
+        assertEquals(2, steps.size());
+    }
+
+    @Test
+    public void stepTimesAreFixed() {
+        clock.advance(STEP*5/2);
+        loop.advance(recorder);
+        assertEquals(2, steps.size());
+        // each step ends where it would have ended, the half step after them is still due
+        assertEquals(STEP, (long) steps.get(0));
+        assertEquals(2*STEP, (long) steps.get(1));
+    }
+
+    @Test
+    public void dropsStepsBeyondMax() {
+        clock.advance(STEP*(MAX_STEPS+10) + STEP/4);
+        assertEquals(MAX_STEPS, loop.advance(recorder));
+        // the stall is forgotten except the fraction of a step
+        assertEquals(0.25f, loop.getAlpha(), 1e-6f);
+        clock.advance(STEP*3/4);
+        assertEquals(1, loop.advance(recorder));
+        assertEquals(MAX_STEPS+1, steps.size());
+    }
+
+    @Test
+    public void alphaIsFractionOfStep() {
+        assertEquals(0f, loop.getAlpha(), 0f);
+        clock.advance(STEP/4);
+        loop.advance(recorder);
+        assertEquals(0.25f, loop.getAlpha(), 1e-6f);
+        clock.advance(STEP);
+        loop.advance(recorder);
+        assertEquals(0.25f, loop.getAlpha(), 1e-6f);
+        clock.advance(STEP/2);
+        loop.advance(recorder);
+        assertEquals(0.75f, loop.getAlpha(), 1e-6f);
+    }
+
+    @Test
+    public void stepperStopsLoop() {
+        FixedStepLoop.Stepper stopsAtSecond = time -> steps.add(time) && steps.size()<2;
+        clock.advance(STEP*4 + STEP/2);
+        assertEquals(2, loop.advance(stopsAtSecond));
+        assertEquals(2, steps.size());
+        // the time that was due is not made up later
+        assertEquals(0f, loop.getAlpha(), 0f);
+        clock.advance(STEP/2);
+        assertEquals(0, loop.advance(recorder));
+    }
+
+    @Test
+    public void resetForgetsElapsedTime() {
+        clock.advance(STEP*3);
+        loop.reset();
+        assertEquals(0, loop.advance(recorder));
+        assertEquals(0f, loop.getAlpha(), 0f);
+    }
+}
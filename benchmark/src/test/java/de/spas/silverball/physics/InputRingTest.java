@@ -0,0 +1,112 @@
+package de.spas.silverball.physics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.spas.math.Vector2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Samples of InputRing with x = time and y = -time, so any interpolated value has y == -x.
+ */
+public class InputRingTest {
+
+    private static final int CAPACITY = 8;
+    private static final float EPSILON = 1e-3f;
+
+    private final InputRing ring = new InputRing(CAPACITY);
+    private final Vector2 out = new Vector2();
+
+    @Test
+    public void noInputYet() {
+        out.set(7, 7);
+        assertFalse(ring.sample(100, out));
+        assertEquals(7, out.x, 0);
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        push(100);
+        push(200);
+        assertTrue(ring.sample(150, out));
+        assertSample(150);
+        assertTrue(ring.sample(175, out));
+        assertSample(175);
+        // nothing newer yet, the newest sample holds
+        assertTrue(ring.sample(260, out));
+        assertSample(200);
+        push(300);
+        assertTrue(ring.sample(280, out));
+        assertSample(280);
+    }
+
+    @Test
+    public void beforeFirstSampleIsFirstSample() {
+        push(100);
+        push(200);
+        assertTrue(ring.sample(50, out));
+        assertSample(100);
+    }
+
+    @Test
+    public void wrapsAround() {
+        // the reader keeps up, the ring goes round several times
+        for(int t=1; t<=CAPACITY*5; t++) {
+            push(t*10);
+            assertTrue(ring.sample(t*10 - 5, out));
+            assertSample(t==1 ? 10 : t*10 - 5);
+        }
+    }
+
+    @Test
+    public void fallsBehind() {
+        for(int t=1; t<=CAPACITY*3; t++) push(t*10);
+        // the oldest samples are overwritten, the reader skips to those still there
+        assertTrue(ring.sample(15, out));
+        float oldest = out.x;
+        assertTrue("got overwritten sample " + oldest, oldest > CAPACITY*2*10);
+        assertSample(oldest);
+        assertTrue(ring.sample(CAPACITY*3*10 - 5, out));
+        assertSample(CAPACITY*3*10 - 5);
+    }
+
+    @Test
+    public void clearDropsSamples() {
+        push(100);
+        push(200);
+        ring.clear();
+        assertFalse(ring.sample(150, out));
+        push(300);
+        assertTrue(ring.sample(150, out));
+        assertSample(300);
+    }
+
+    @Test
+    public void concurrentWriterNeverTears() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for(long t=1; t<=2_000_000; t++) push(t);
+            done.set(true);
+        });
+        writer.start();
+        long time = 0;
+        while(!done.get()) {
+            time += 3;
+            if(ring.sample(time, out)) assertSample(out.x);
+        }
+        writer.join();
+    }
+
+    private void push(long time) {
+        ring.push(time, time, -time);
+    }
+
+    private void assertSample(float x) {
+        assertEquals(x, out.x, EPSILON*Math.max(1, Math.abs(x)));
+        assertEquals("x and y of different samples", -out.x, out.y, EPSILON*Math.max(1, Math.abs(x)));
+    }
+}
@@ -0,0 +1,74 @@
+package de.spas.silverball.physics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Step responses of LowPassFilter.
+ */
+public class LowPassFilterTest {
+
+    private static final float CUTOFF_HZ = 5f;
+    // 1/(2 pi 5Hz), about 31.8ms
+    private static final long TIME_CONSTANT = Math.round(1e9 / (2*Math.PI*CUTOFF_HZ));
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void firstValuePassesThrough() {
+        LowPassFilter filter = new LowPassFilter(CUTOFF_HZ);
+        filter.apply(1000, 3, -4);
+        assertEquals(3, filter.getX(), 0);
+        assertEquals(-4, filter.getY(), 0);
+    }
+
+    @Test
+    public void movesHalfWayAfterTimeConstant() {
+        LowPassFilter filter = new LowPassFilter(CUTOFF_HZ);
+        filter.apply(0, 0, 0);
+        filter.apply(TIME_CONSTANT, 10, -10);
+        assertEquals(5, filter.getX(), EPSILON*10);
+        assertEquals(-5, filter.getY(), EPSILON*10);
+    }
+
+    @Test
+    public void rateIndependent() {
+        // 100ms of a step input, once at 200Hz and once at 50Hz
+        LowPassFilter fast = new LowPassFilter(CUTOFF_HZ);
+        LowPassFilter slow = new LowPassFilter(CUTOFF_HZ);
+        fast.apply(0, 0, 0);
+        slow.apply(0, 0, 0);
+        for(long t=5_000_000; t<=100_000_000; t+=5_000_000) fast.apply(t, 1, 0);
+        for(long t=20_000_000; t<=100_000_000; t+=20_000_000) slow.apply(t, 1, 0);
+        assertTrue(fast.getX() > 0.9f);
+        assertEquals(fast.getX(), slow.getX(), 0.05f);
+    }
+
+    @Test
+    public void zeroCutoffPassesThrough() {
+        LowPassFilter filter = new LowPassFilter(0);
+        filter.apply(0, 0, 0);
+        filter.apply(1000, 10, 20);
+        assertEquals(10, filter.getX(), 0);
+        assertEquals(20, filter.getY(), 0);
+    }
+
+    @Test
+    public void resetTakesNextValue() {
+        LowPassFilter filter = new LowPassFilter(CUTOFF_HZ);
+        filter.apply(0, 0, 0);
+        filter.reset();
+        filter.apply(1000, 10, 20);
+        assertEquals(10, filter.getX(), 0);
+        assertEquals(20, filter.getY(), 0);
+    }
+
+    @Test
+    public void timeGoingBackIsNoChange() {
+        LowPassFilter filter = new LowPassFilter(CUTOFF_HZ);
+        filter.apply(1000, 2, 2);
+        filter.apply(500, 10, 10);
+        assertEquals(2, filter.getX(), 0);
+    }
+}
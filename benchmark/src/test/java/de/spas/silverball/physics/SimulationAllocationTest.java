@@ -0,0 +1,68 @@
+package de.spas.silverball.physics;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A physics step in the running game must not allocate, else the garbage collector interrupts the frames.
+ * Like GameStepBenchmark the tilt turns slowly and events are ignored, so the ball keeps rolling,
+ * bouncing and crossing traps. Besides levels.json the walls.json fixture covers obstacle contacts.
+ */
+public class SimulationAllocationTest {
+
+    private static final float TIME_STEP = 0.02f;
+    private static final float ACCELERATION = 12f * 9.81f * 0.3f;
+    // enough for the JIT to compile step() before measuring
+    private static final int WARMUP_STEPS = 20000;
+    private static final int STEPS = 10000;
+    // a late JIT recompilation may allocate a few hundred bytes once, one object per step is 16 bytes or more
+    private static final long MAX_BYTES = STEPS;
+
+    @Test
+    public void stepDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for(Level level : loadLevels()) {
+            Simulation simulation = new Simulation(TIME_STEP);
+            simulation.reset(level);
+            float angle = run(simulation, 0, WARMUP_STEPS);
+            long before = threads.getThreadAllocatedBytes(thread);
+            run(simulation, angle, STEPS);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            assertTrue("bytes allocated by " + STEPS + " steps of level " + level.getNumber() + ": " + allocated,
+                    allocated < MAX_BYTES);
+        }
+    }
+
+    private static float run(Simulation simulation, float angle, int steps) {
+        for(int i=0; i<steps; i++) {
+            angle += 0.01f;
+            simulation.setAcceleration((float) Math.cos(angle) * ACCELERATION, (float) Math.sin(angle) * ACCELERATION);
+            simulation.step();
+        }
+        return angle;
+    }
+
+    private static List<Level> loadLevels() {
+        Gson gson = new Gson();
+        List<Level> levels = new ArrayList<>(gson.fromJson(resource("/levels.json"), LevelPack.class).getLevels());
+        levels.add(gson.fromJson(resource("/walls.json"), Level.class));
+        return levels;
+    }
+
+    private static InputStreamReader resource(String name) {
+        return new InputStreamReader(SimulationAllocationTest.class.getResourceAsStream(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package de.spas.silverball.physics;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The events of Simulation.step() on small levels with the ball rolling along y=4.
+ */
+public class SimulationTest {
+
+    private static final float TIME_STEP = 0.02f;
+    // strong tilt, the ball crosses the field within a second
+    private static final float ACCELERATION = 50f;
+    private static final int MAX_STEPS = 500;
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void bouncesOffWall() {
+        Simulation simulation = start(level("\"traps\":[],\"obstacles\":[{\"type\":\"wall\",\"texture\":\"wood\",\"x\":8,\"y\":0,\"w\":1,\"h\":9}]"));
+        simulation.setAcceleration(ACCELERATION, 0);
+        int bounces = 0;
+        for(int i=0; i<MAX_STEPS; i++) {
+            float before = simulation.getVelocity().x + ACCELERATION*TIME_STEP;
+            Simulation.Event event = simulation.step();
+            assertTrue("ball passed the wall at x=" + simulation.getLocation().x,
+                    simulation.getLocation().x <= 8 - Simulation.BALL_RADIUS + EPSILON);
+            if(event==Simulation.Event.BOUNCE && bounces++==0) {
+                assertTrue("ball still rolls into the wall", simulation.getVelocity().x < 0);
+                assertEquals(-before*Simulation.BOUNCE_FACTOR, simulation.getVelocity().x, 0.5f);
+            }
+        }
+        assertTrue("ball never hit the wall", bounces>0);
+    }
+
+    @Test
+    public void clampsToPlayfield() {
+        Simulation simulation = start(level("\"traps\":[]"));
+        // into the top left corner, then the bottom right one
+        for(int corner=0; corner<2; corner++) {
+            float sign = corner==0 ? -1 : 1;
+            simulation.setAcceleration(sign*ACCELERATION*4, sign*ACCELERATION*4);
+            boolean bounced = false;
+            for(int i=0; i<MAX_STEPS; i++) {
+                bounced |= simulation.step()==Simulation.Event.BOUNCE;
+                Vector2 l = simulation.getLocation();
+                assertTrue("x outside the playfield: " + l.x,
+                        l.x >= Simulation.BALL_RADIUS && l.x <= Simulation.FIELD_WIDTH - Simulation.BALL_RADIUS);
+                assertTrue("y outside the playfield: " + l.y,
+                        l.y >= Simulation.BALL_RADIUS && l.y <= Simulation.FIELD_HEIGHT - Simulation.BALL_RADIUS);
+            }
+            assertTrue(bounced);
+            float x = corner==0 ? Simulation.BALL_RADIUS : Simulation.FIELD_WIDTH - Simulation.BALL_RADIUS;
+            float y = corner==0 ? Simulation.BALL_RADIUS : Simulation.FIELD_HEIGHT - Simulation.BALL_RADIUS;
+            // the ball keeps bouncing a little off the corner it is pressed into
+            assertEquals(x, simulation.getLocation().x, 0.1f);
+            assertEquals(y, simulation.getLocation().y, 0.1f);
+        }
+    }
+
+    @Test
+    public void fallsIntoTrap() {
+        Level level = level("\"traps\":[{\"texture\":\"lava\",\"x\":6,\"y\":3,\"w\":2,\"h\":2}]");
+        Simulation simulation = start(level);
+        simulation.setAcceleration(ACCELERATION, 0);
+        assertEquals(Simulation.Event.TRAP, run(simulation));
+        assertSame(level.getTraps().get(0), simulation.getHitTrap());
+        assertTrue(simulation.getLocation().x >= 6 && simulation.getLocation().x < 8);
+    }
+
+    @Test
+    public void fallsIntoHole() {
+        Simulation simulation = start(level("\"traps\":[]", 12, 4));
+        simulation.setAcceleration(ACCELERATION*4, 0);
+        assertEquals(Simulation.Event.HOLE, run(simulation));
+        assertEquals(12, simulation.getLocation().x, Simulation.BALL_RADIUS);
+        assertEquals(null, simulation.getHitTrap());
+    }
+
+    /**
+     * @return the first TRAP or HOLE event
+     */
+    private static Simulation.Event run(Simulation simulation) {
+        for(int i=0; i<MAX_STEPS; i++) {
+            Simulation.Event event = simulation.step();
+            if(event==Simulation.Event.TRAP || event==Simulation.Event.HOLE) return event;
+        }
+        return Simulation.Event.NONE;
+    }
+
+    private static Simulation start(Level level) {
+        Simulation simulation = new Simulation(TIME_STEP);
+        simulation.reset(level);
+        return simulation;
+    }
+
+    private static Level level(String content) {
+        return level(content, 15, 8);
+    }
+
+    /**
+     * a level with the ball at 2/4 and the given traps or obstacles
+     */
+    private static Level level(String content, int holeX, int holeY) {
+        return new Gson().fromJson("{\"number\":1,\"points\":1000,\"time\":10,\"ball\":{\"startx\":2,\"starty\":4},"
+                + "\"hole\":{\"x\":" + holeX + ",\"y\":" + holeY + "}," + content + "}", Level.class);
+    }
+}
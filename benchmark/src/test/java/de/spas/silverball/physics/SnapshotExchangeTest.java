@@ -0,0 +1,86 @@
+package de.spas.silverball.physics;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The triple buffer of SnapshotExchange: the writer's and the reader's buffer are never the same,
+ * and the reader gets whole snapshots, the latest one published.
+ */
+public class SnapshotExchangeTest {
+
+    @Test
+    public void readsLatestPublished() {
+        SnapshotExchange exchange = new SnapshotExchange();
+        for(int i=1; i<=3; i++) {
+            exchange.beginWrite().points = i;
+            exchange.publish();
+        }
+        Snapshot s = exchange.read();
+        assertEquals(3, s.points);
+        assertEquals(3, s.step);
+        // nothing new, the same buffer again
+        assertSame(s, exchange.read());
+    }
+
+    @Test
+    public void neverSharesBuffer() {
+        // every interleaving of the two sides, in one thread
+        SnapshotExchange exchange = new SnapshotExchange();
+        Random random = new Random(3);
+        Snapshot front = exchange.read();
+        long published = 0;
+        for(int i=0; i<100_000; i++) {
+            Snapshot back = exchange.beginWrite();
+            assertNotSame("writer got the reader's buffer", front, back);
+            if(random.nextBoolean()) {
+                back.points = (int) ++published;
+                exchange.publish();
+            } else {
+                front = exchange.read();
+                assertNotSame("reader got the writer's buffer", front, exchange.beginWrite());
+                assertEquals(published, front.step);
+                assertEquals(published, front.points);
+            }
+        }
+    }
+
+    @Test
+    public void readerSeesWholeSnapshots() throws InterruptedException {
+        SnapshotExchange exchange = new SnapshotExchange();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for(int i=1; i<=1_000_000; i++) {
+                Snapshot s = exchange.beginWrite();
+                s.ballX = i;
+                s.ballY = -i;
+                s.points = i;
+                exchange.publish();
+            }
+            done.set(true);
+        });
+        writer.start();
+        long last = 0;
+        while(!done.get()) {
+            Snapshot s = exchange.read();
+            int points = s.points;
+            assertTrue("steps went back", s.step >= last);
+            last = s.step;
+            assertEquals(points, s.step);
+            assertEquals(points, s.ballX, 0);
+            assertEquals(-points, s.ballY, 0);
+            // the writer must not be filling the buffer the reader holds
+            Thread.yield();
+            assertEquals(points, s.points);
+        }
+        writer.join();
+        assertEquals(1_000_000, exchange.read().points);
+    }
+}
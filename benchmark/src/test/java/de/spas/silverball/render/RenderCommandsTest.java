@@ -0,0 +1,136 @@
+package de.spas.silverball.render;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Frames recorded into RenderCommands and replayed into a backend that logs every call,
+ * and into HeadlessBackend.
+ */
+public class RenderCommandsTest {
+
+    /**
+     * one line per call with all arguments
+     */
+    private static class LogBackend implements RenderBackend {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void clear() {
+            calls.add("clear");
+        }
+
+        @Override
+        public void bitmap(int texture, float srcLeft, float srcTop, float srcRight, float srcBottom,
+                           float left, float top, float right, float bottom) {
+            calls.add("bitmap " + texture + " " + srcLeft + " " + srcTop + " " + srcRight + " " + srcBottom
+                    + " " + left + " " + top + " " + right + " " + bottom);
+        }
+
+        @Override
+        public void circle(int paint, float x, float y, float radius) {
+            calls.add("circle " + paint + " " + x + " " + y + " " + radius);
+        }
+
+        @Override
+        public void text(int paint, char[] chars, int length, float x, float y) {
+            calls.add("text " + paint + " " + new String(chars, 0, length) + " " + x + " " + y);
+        }
+    }
+
+    @Test
+    public void replaysInRecordedOrder() {
+        RenderCommands commands = new RenderCommands();
+        commands.clear();
+        commands.bitmap(3, 0, 0, 64, 32, 10, 20, 74, 52);
+        commands.circle(1, 5.5f, 6.5f, 2);
+        commands.text(2, "Level 12xx".toCharArray(), 8, 100, 200);
+        LogBackend log = new LogBackend();
+        commands.replay(log);
+        assertEquals(Arrays.asList(
+                "clear",
+                "bitmap 3 0.0 0.0 64.0 32.0 10.0 20.0 74.0 52.0",
+                "circle 1 5.5 6.5 2.0",
+                "text 2 Level 12 100.0 200.0"), log.calls);
+    }
+
+    @Test
+    public void sortGroupsWithinLayers() {
+        RenderCommands commands = new RenderCommands();
+        commands.setLayer(1);
+        commands.circle(1, 0, 0, 1);
+        commands.bitmap(7, 0, 0, 1, 1, 1, 0, 0, 0);
+        commands.bitmap(5, 0, 0, 1, 1, 2, 0, 0, 0);
+        commands.bitmap(7, 0, 0, 1, 1, 3, 0, 0, 0);
+        commands.setLayer(0);
+        commands.bitmap(9, 0, 0, 1, 1, 4, 0, 0, 0);
+        commands.sort();
+        LogBackend log = new LogBackend();
+        commands.replay(log);
+        // layer 0 first, then bitmaps by texture before circles, equal ones in recorded order
+        assertEquals(Arrays.asList(
+                "bitmap 9 0.0 0.0 1.0 1.0 4.0 0.0 0.0 0.0",
+                "bitmap 5 0.0 0.0 1.0 1.0 2.0 0.0 0.0 0.0",
+                "bitmap 7 0.0 0.0 1.0 1.0 1.0 0.0 0.0 0.0",
+                "bitmap 7 0.0 0.0 1.0 1.0 3.0 0.0 0.0 0.0",
+                "circle 1 0.0 0.0 1.0"), log.calls);
+    }
+
+    @Test
+    public void growsAndResets() {
+        RenderCommands commands = new RenderCommands();
+        for(int i=0; i<1000; i++) commands.circle(i%3, i, -i, 1);
+        assertEquals(1000, commands.getCount());
+        LogBackend log = new LogBackend();
+        commands.replay(log);
+        assertEquals(1000, log.calls.size());
+        assertEquals("circle 0 999.0 -999.0 1.0", log.calls.get(999));
+
+        commands.reset();
+        assertEquals(0, commands.getCount());
+        commands.clear();
+        log.calls.clear();
+        commands.replay(log);
+        assertEquals(Arrays.asList("clear"), log.calls);
+    }
+
+    @Test
+    public void headlessCountsStateChanges() {
+        RenderCommands commands = new RenderCommands();
+        commands.clear();
+        commands.bitmap(1, 0, 0, 1, 1, 0, 0, 1, 1);
+        commands.bitmap(2, 0, 0, 1, 1, 0, 0, 1, 1);
+        commands.bitmap(1, 0, 0, 1, 1, 0, 0, 1, 1);
+        commands.circle(1, 0, 0, 1);
+        commands.text(1, new char[]{'1'}, 1, 0, 0);
+        HeadlessBackend headless = new HeadlessBackend();
+        commands.replay(headless);
+        assertEquals(6, headless.getDrawCalls());
+        assertEquals(3, headless.getBitmaps());
+        assertEquals(1, headless.getCircles());
+        assertEquals(1, headless.getTexts());
+        assertEquals(5, headless.getStateChanges());
+
+        // grouped by texture, the two bitmaps of texture 1 follow each other
+        commands.sort();
+        headless.reset();
+        commands.replay(headless);
+        assertEquals(6, headless.getDrawCalls());
+        assertEquals(4, headless.getStateChanges());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIdOutOfRange() {
+        new RenderCommands().circle(0x10000, 0, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLayerOutOfRange() {
+        new RenderCommands().setLayer(128);
+    }
+}
@@ -0,0 +1,146 @@
+package de.spas.silverball.replay;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.physics.Simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Encoding of ReplayRecorder and Replay, and runs repeated by ReplayPlayer.
+ */
+public class ReplayTest {
+
+    private static final float TIME_STEP = 0.02f;
+    private static final long STEP_MILLIS = 20;
+
+    @Test
+    public void roundTrip() throws IOException {
+        // steady, small and large changes in both directions, as far as int quanta go
+        float big = Integer.MAX_VALUE / ReplayRecorder.QUANTUM / 2;
+        float[] xs = {0, 0, 1.5f, -1.5f, 3.00390625f, -big, big, big, 0.001f, -40f};
+        float[] ys = {0, 12f, 12f, -0.5f, 100f, big, -big, 0, -0.001f, 40f};
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(7, TIME_STEP);
+        Vector2 v = new Vector2();
+        for(int i=0; i<xs.length; i++) {
+            v.set(xs[i], ys[i]);
+            recorder.record(v);
+            // recorded values are quantized in place
+            assertEquals(Math.round(xs[i]*ReplayRecorder.QUANTUM) / ReplayRecorder.QUANTUM, v.x, 0);
+            xs[i] = v.x;
+            ys[i] = v.y;
+        }
+
+        Replay replay = Replay.read(new ByteArrayInputStream(bytes(recorder)));
+        assertEquals(7, replay.getLevelNumber());
+        assertEquals(TIME_STEP, replay.getTimeStep(), 0);
+        assertEquals(xs.length, replay.getSteps());
+        for(int i=0; i<xs.length; i++) {
+            assertEquals("x of step " + i, xs[i], replay.getAccelerationX(i), 0);
+            assertEquals("y of step " + i, ys[i], replay.getAccelerationY(i), 0);
+        }
+    }
+
+    @Test
+    public void steadyInputTakesTwoBytesPerStep() throws IOException {
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(1, TIME_STEP);
+        recorder.record(new Vector2(3, -2));
+        int first = bytes(recorder).length;
+        for(int i=0; i<1000; i++) recorder.record(new Vector2(3, -2));
+        assertEquals(first + 2000, bytes(recorder).length);
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedReplayFails() throws IOException {
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(1, TIME_STEP);
+        for(int i=0; i<10; i++) recorder.record(new Vector2(i*100, -i*100));
+        byte[] data = bytes(recorder);
+        Replay.read(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherDataFails() throws IOException {
+        Replay.read(new ByteArrayInputStream(new byte[20]));
+    }
+
+    /**
+     * plays every level the way GameEngine does with random tilt, the replay has to end the same way
+     */
+    @Test
+    public void replayRepeatsRun() throws IOException {
+        Random random = new Random(42);
+        for(Level level : loadLevels()) {
+            for(int run=0; run<5; run++) {
+                ReplayRecorder recorder = new ReplayRecorder();
+                Simulation simulation = new Simulation(TIME_STEP);
+                recorder.begin(level.getNumber(), TIME_STEP);
+                simulation.reset(level);
+                Simulation.Event event = Simulation.Event.NONE;
+                Vector2 input = new Vector2();
+                float angle = random.nextFloat() * 6.3f;
+                while(simulation.getSteps()*STEP_MILLIS < level.getTime()*1000L) {
+                    angle += (random.nextFloat() - 0.5f) * 0.2f;
+                    input.set((float) Math.cos(angle) * 20, (float) Math.sin(angle) * 20);
+                    recorder.record(input);
+                    simulation.setAcceleration(input.x, input.y);
+                    event = simulation.step();
+                    if(event==Simulation.Event.HOLE || event==Simulation.Event.TRAP) break;
+                }
+                if(event==Simulation.Event.BOUNCE) event = Simulation.Event.NONE;
+
+                Replay replay = Replay.read(new ByteArrayInputStream(bytes(recorder)));
+                ReplayPlayer.Result result = new ReplayPlayer(replay.getTimeStep()).play(level, replay);
+                String name = "level " + level.getNumber() + " run " + run;
+                assertEquals(name, event, result.event);
+                assertEquals(name, simulation.getSteps(), result.steps);
+                // bit for bit, not just close
+                assertEquals(name, simulation.getLocation().x, result.location.x, 0);
+                assertEquals(name, simulation.getLocation().y, result.location.y, 0);
+            }
+        }
+    }
+
+    @Test
+    public void otherInputEndsElsewhere() throws IOException {
+        Level level = loadLevels()[0];
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(level.getNumber(), TIME_STEP);
+        for(int i=0; i<100; i++) recorder.record(new Vector2(10, 5));
+        ReplayPlayer player = new ReplayPlayer(TIME_STEP);
+        ReplayPlayer.Result a = player.play(level, Replay.read(new ByteArrayInputStream(bytes(recorder))));
+        recorder.begin(level.getNumber(), TIME_STEP);
+        for(int i=0; i<100; i++) recorder.record(new Vector2(-10, 5));
+        ReplayPlayer.Result b = player.play(level, Replay.read(new ByteArrayInputStream(bytes(recorder))));
+        assertNotEquals(a.location.x, b.location.x, 0.01f);
+    }
+
+    private static byte[] bytes(ReplayRecorder recorder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static Level[] loadLevels() {
+        LevelPack pack = new Gson().fromJson(new InputStreamReader(ReplayTest.class.getResourceAsStream("/levels.json"),
+                StandardCharsets.UTF_8), LevelPack.class);
+        return pack.getLevels().toArray(new Level[0]);
+    }
+}
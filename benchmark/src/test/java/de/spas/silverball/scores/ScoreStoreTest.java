@@ -0,0 +1,153 @@
+package de.spas.silverball.scores;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ScoreStore logs written, closed and read back from a temporary folder.
+ */
+public class ScoreStoreTest {
+
+    private static final int HEADER_SIZE = 6;
+    private static final int RECORD_SIZE = 25;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "scores.log");
+    }
+
+    @Test
+    public void missingFileIsEmpty() throws Exception {
+        ScoreStore store = open();
+        assertEquals(0, store.getHighscore());
+        assertNull(store.getBestLevel(1));
+        assertEquals(HEADER_SIZE, file.length());
+    }
+
+    @Test
+    public void appendsAndReopens() throws Exception {
+        ScoreStore store = open();
+        store.record(ScoreRecord.level(1, 50, 300, 1000));
+        store.record(ScoreRecord.level(2, 40, 400, 2000));
+        store.record(ScoreRecord.game(2, 90, 700, 3000));
+        close(store);
+        assertEquals(HEADER_SIZE + 3*RECORD_SIZE, file.length());
+
+        ScoreStore reopened = open();
+        assertEquals(90, reopened.getHighscore());
+        assertRecord(ScoreRecord.level(1, 50, 300, 1000), reopened.getBestLevel(1));
+        assertRecord(ScoreRecord.level(2, 40, 400, 2000), reopened.getBestLevel(2));
+        assertRecord(ScoreRecord.game(2, 90, 700, 3000), reopened.getBestGames().get(0));
+    }
+
+    @Test
+    public void compactsToBests() throws Exception {
+        ScoreStore store = open();
+        // three runs of level 1, the second one best
+        store.record(ScoreRecord.level(1, 50, 300, 1000));
+        store.record(ScoreRecord.level(1, 60, 500, 2000));
+        store.record(ScoreRecord.level(1, 60, 600, 3000));
+        for(int i=0; i<ScoreStore.TOP_GAMES+5; i++) store.record(ScoreRecord.game(1, i, 100, 4000+i));
+        close(store);
+        assertEquals(HEADER_SIZE + (3+ScoreStore.TOP_GAMES+5)*RECORD_SIZE, file.length());
+
+        ScoreStore reopened = open();
+        assertEquals(HEADER_SIZE + (1+ScoreStore.TOP_GAMES)*RECORD_SIZE, file.length());
+        assertRecord(ScoreRecord.level(1, 60, 500, 2000), reopened.getBestLevel(1));
+        List<ScoreRecord> games = reopened.getBestGames();
+        assertEquals(ScoreStore.TOP_GAMES, games.size());
+        for(int i=0; i<games.size(); i++) assertEquals(ScoreStore.TOP_GAMES+4-i, games.get(i).points);
+    }
+
+    @Test
+    public void dropsTruncatedLastRecord() throws Exception {
+        ScoreStore store = open();
+        store.record(ScoreRecord.level(1, 50, 300, 1000));
+        store.record(ScoreRecord.level(2, 40, 400, 2000));
+        close(store);
+        // the process died while writing the second record
+        truncate(HEADER_SIZE + RECORD_SIZE + 10);
+
+        ScoreStore reopened = open();
+        assertRecord(ScoreRecord.level(1, 50, 300, 1000), reopened.getBestLevel(1));
+        assertNull(reopened.getBestLevel(2));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length());
+
+        // records appended after the repair are read back
+        reopened.record(ScoreRecord.level(3, 30, 200, 3000));
+        close(reopened);
+        assertRecord(ScoreRecord.level(3, 30, 200, 3000), open().getBestLevel(3));
+    }
+
+    @Test
+    public void skipsRecordWithBadCrc() throws Exception {
+        ScoreStore store = open();
+        store.record(ScoreRecord.level(1, 50, 300, 1000));
+        store.record(ScoreRecord.level(2, 40, 400, 2000));
+        store.record(ScoreRecord.level(3, 30, 200, 3000));
+        close(store);
+        // flip a bit in the points of the middle record
+        try(RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            long pos = HEADER_SIZE + RECORD_SIZE + 6;
+            f.seek(pos);
+            int b = f.read();
+            f.seek(pos);
+            f.write(b ^ 1);
+        }
+
+        ScoreStore reopened = open();
+        assertRecord(ScoreRecord.level(1, 50, 300, 1000), reopened.getBestLevel(1));
+        assertNull(reopened.getBestLevel(2));
+        // the record after the damaged one still counts
+        assertRecord(ScoreRecord.level(3, 30, 200, 3000), reopened.getBestLevel(3));
+        assertEquals(HEADER_SIZE + 2*RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void recordAfterCloseKeepsBest() throws Exception {
+        ScoreStore store = open();
+        close(store);
+        store.record(ScoreRecord.game(1, 10, 100, 1000));
+        store.flush();
+        store.close();
+        assertEquals(10, store.getHighscore());
+        assertEquals(HEADER_SIZE, file.length());
+    }
+
+    private ScoreStore open() throws IOException {
+        return ScoreStore.open(file, e -> fail(e.toString()));
+    }
+
+    private static void close(ScoreStore store) throws InterruptedException {
+        store.close();
+        assertTrue("writer did not finish", store.awaitClosed(5, TimeUnit.SECONDS));
+    }
+
+    private void truncate(long length) throws IOException {
+        try(RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.setLength(length);
+        }
+    }
+
+    private static void assertRecord(ScoreRecord expected, ScoreRecord actual) {
+        assertEquals(expected.toString(), String.valueOf(actual));
+        assertEquals(expected.kind, actual.kind);
+    }
+}
@@ -0,0 +1,56 @@
+package de.spas.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Numbers formatted by HudText.set() into its char buffer.
+ */
+public class HudTextTest {
+
+    @Test
+    public void formatsBehindPrefix() {
+        HudText text = new HudText("Level ");
+        assertEquals("Level ", text.toString());
+        text.set(7);
+        assertEquals("Level 7", text.toString());
+        text.set(1234);
+        assertEquals("Level 1234", text.toString());
+        // shorter again, nothing of the longer number is left
+        text.set(56);
+        assertEquals("Level 56", text.toString());
+        assertEquals(8, text.length());
+    }
+
+    @Test
+    public void formatsLikeIntegerToString() {
+        HudText text = new HudText("");
+        int[] values = {0, 1, 9, 10, 99, 100, -1, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for(int v : values) {
+            text.set(v);
+            assertEquals(Integer.toString(v), new String(text.getChars(), 0, text.length()));
+        }
+    }
+
+    @Test
+    public void reportsChanges() {
+        HudText text = new HudText("");
+        // the first value always counts, even 0
+        assertTrue(text.set(0));
+        assertFalse(text.set(0));
+        assertTrue(text.set(5));
+        assertFalse(text.set(5));
+    }
+
+    @Test
+    public void reusesBuffer() {
+        HudText text = new HudText("x");
+        char[] chars = text.getChars();
+        text.set(Integer.MIN_VALUE);
+        assertSame(chars, text.getChars());
+    }
+}
@@ -0,0 +1,175 @@
+package de.spas.silverball.io;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.model.Obstacle;
+import de.spas.silverball.model.Trap;
+
+/**
+ * Compiles a levels.json pack into the binary format read by BinaryLevelPack.
+ * A build tool, not part of the app: runs at build time (see the compileLevels task) and on the JVM:
+ * <pre>java de.spas.silverball.io.LevelCompiler levels.json levels.bin</pre>
+ *
+ * Layout, big endian:
+ * <pre>
+ * int    magic, short version
+ * string pack name
+ * short  texture count, string[] textures
+ * short  type count, string[] obstacle types
+ * int    level count, int[] absolute offset of every level
+ * level: int number, int points, int time, byte ball x/y, byte hole x/y,
+ *        short trap count, trap: short texture, byte x/y/w/h, byte shape (see BinaryLevelPack.TRAP_SHAPES),
+ *            polygon only: byte point count, short[] x/y in 1/POINT_SCALE cells
+ *        short obstacle count, obstacle: short type (-1 for none), short texture, byte x/y/w/h
+ * string: short byte length, UTF-8 bytes
+ * </pre>
+ * Counts, lengths and texture indices are unsigned shorts, the obstacle type index is signed.
+ * Packs that do not fit are rejected.
+ */
+public class LevelCompiler {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length!=2) {
+            System.err.println("usage: LevelCompiler <levels.json> <levels.bin>");
+            System.exit(1);
+        }
+        compile(new File(args[0]), new File(args[1]));
+    }
+
+    public static void compile(File json, File bin) throws IOException {
+        LevelPack pack;
+        try(Reader reader = new InputStreamReader(Files.newInputStream(json.toPath()), StandardCharsets.UTF_8)) {
+            pack = new Gson().fromJson(reader, LevelPack.class);
+        }
+        File dir = bin.getParentFile();
+        if(dir!=null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        try(OutputStream out = new FileOutputStream(bin)) {
+            out.write(compile(pack));
+        }
+    }
+
+    public static byte[] compile(LevelPack pack) throws IOException {
+        List<String> textures = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for(Level level : pack.getLevels()) {
+            for(Trap t : level.getTraps()) addOnce(textures, t.getTexture());
+            for(Obstacle o : level.getObstacles()) {
+                addOnce(textures, o.getTexture());
+                if(o.getType()!=null) addOnce(types, o.getType());
+            }
+        }
+
+        // levels first, so their offsets are known for the header
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        int[] offsets = new int[pack.getLevels().size()];
+        for(int i=0; i<offsets.length; i++) {
+            offsets[i] = out.size();
+            writeLevel(out, pack.getLevels().get(i), textures, types);
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(result);
+        header.writeInt(BinaryLevelPack.MAGIC);
+        header.writeShort(BinaryLevelPack.VERSION);
+        writeString(header, pack.getName()!=null ? pack.getName() : "");
+        writeStrings(header, textures, "texture count");
+        // signed in the obstacles, -1 is none
+        if(types.size()>Short.MAX_VALUE) throw new IOException("obstacle type count out of range: " + types.size());
+        writeStrings(header, types, "obstacle type count");
+        header.writeInt(offsets.length);
+        int base = header.size() + 4*offsets.length;
+        for(int offset : offsets) header.writeInt(base + offset);
+        body.writeTo(header);
+        header.flush();
+        return result.toByteArray();
+    }
+
+    private static void writeLevel(DataOutputStream out, Level level, List<String> textures, List<String> types) throws IOException {
+        out.writeInt(level.getNumber());
+        out.writeInt(level.getPoints());
+        out.writeInt(level.getTime());
+        writeCoordinate(out, level.getBall().getStartx());
+        writeCoordinate(out, level.getBall().getStarty());
+        writeCoordinate(out, level.getHole().getX());
+        writeCoordinate(out, level.getHole().getY());
+        writeUnsignedShort(out, level.getTraps().size(), "trap count");
+        for(Trap t : level.getTraps()) {
+            writeUnsignedShort(out, textures.indexOf(t.getTexture()), "texture index");
+            writeRect(out, t.getX(), t.getY(), t.getW(), t.getH());
+            writeShape(out, t);
+        }
+        writeUnsignedShort(out, level.getObstacles().size(), "obstacle count");
+        for(Obstacle o : level.getObstacles()) {
+            out.writeShort(o.getType()!=null ? types.indexOf(o.getType()) : -1);
+            writeUnsignedShort(out, textures.indexOf(o.getTexture()), "texture index");
+            writeRect(out, o.getX(), o.getY(), o.getW(), o.getH());
+        }
+    }
+
+    private static void writeRect(DataOutputStream out, int x, int y, int w, int h) throws IOException {
+        writeCoordinate(out, x);
+        writeCoordinate(out, y);
+        writeCoordinate(out, w);
+        writeCoordinate(out, h);
+    }
+
+    private static void writeShape(DataOutputStream out, Trap t) throws IOException {
+        int shape = Arrays.asList(BinaryLevelPack.TRAP_SHAPES).indexOf(t.getShape());
+        if(shape<0) throw new IOException("unknown trap shape: " + t.getShape());
+        out.writeByte(shape);
+        if(!Trap.SHAPE_POLYGON.equals(t.getShape())) return;
+        float[] points = t.getPoints();
+        if(points==null || points.length<6 || points.length%2!=0 || points.length/2>0xff) {
+            throw new IOException("polygon trap needs 3 to 255 x,y pairs");
+        }
+        out.writeByte(points.length/2);
+        for(float p : points) {
+            int v = Math.round(p*BinaryLevelPack.POINT_SCALE);
+            if(v<Short.MIN_VALUE || v>Short.MAX_VALUE) throw new IOException("polygon point out of range: " + p);
+            out.writeShort(v);
+        }
+    }
+
+    private static void writeCoordinate(DataOutputStream out, int v) throws IOException {
+        if(v<Byte.MIN_VALUE || v>Byte.MAX_VALUE) throw new IOException("grid coordinate out of range: " + v);
+        out.writeByte(v);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings, String what) throws IOException {
+        writeUnsignedShort(out, strings.size(), what);
+        for(String s : strings) writeString(out, s);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length>0xffff) throw new IOException("string too long: " + s.substring(0, 20) + "...");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeUnsignedShort(DataOutputStream out, int v, String what) throws IOException {
+        if(v<0 || v>0xffff) throw new IOException(what + " out of range: " + v);
+        out.writeShort(v);
+    }
+
+    private static void addOnce(List<String> list, String s) {
+        if(!list.contains(s)) list.add(s);
+    }
+}
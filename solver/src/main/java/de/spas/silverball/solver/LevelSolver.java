@@ -0,0 +1,220 @@
+package de.spas.silverball.solver;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import de.spas.math.Vector2;
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.replay.ReplayRecorder;
+
+/**
+ * Checks a level pack before it ships: plays thousands of simulated games per level with
+ * randomized tilt strategies on all cores and reports how many reach the hole,
+ * the best and median time, a par time and where the ball falls into traps.
+ * A JVM tool in its own module, not part of the app:
+ * <pre>solver levels.json [games per level] [threads] [replay dir]</pre>
+ * The fastest game of every level can be saved as a replay for ReplayPlayer.
+ */
+public class LevelSolver {
+
+    public static final float TIME_STEP = 0.02f;
+    private static final int DEFAULT_GAMES = 4000;
+    // games played by one task without splitting further
+    private static final int BATCH_GAMES = 32;
+    // strongest tilt a strategy uses, about half of what the device gives
+    private static final float MAX_ACCELERATION = 60f;
+    private static final int MIN_HOLD_STEPS = 5;
+    private static final int MAX_HOLD_STEPS = 45;
+    private static final char[] SHADES = " .:-=+*#%@".toCharArray();
+
+    private final Level level;
+    private final float timeStep;
+    private final long maxSteps;
+
+    public LevelSolver(Level level, float timeStep) {
+        this.level = level;
+        this.timeStep = timeStep;
+        maxSteps = Math.round(level.getTime() / timeStep);
+    }
+
+    /**
+     * plays games 0..games-1, each from its own seed, so the result does not depend on the thread count
+     */
+    public SolverStats solve(ForkJoinPool pool, int games) {
+        return pool.invoke(new Batch(0, games));
+    }
+
+    public long seed(int game) {
+        return (long) level.getNumber() << 32 | game;
+    }
+
+    /**
+     * plays one game: the tilt changes every few steps to a mix of the direction
+     * to the hole and a random one, with a strength and mix chosen per game
+     * @param recorder records the game if not null
+     */
+    public Simulation.Event play(Simulation simulation, Random random, long seed, ReplayRecorder recorder) {
+        // Random hardly scrambles nearby seeds, unmixed the first values of game n and n+1 are nearly the same
+        random.setSeed(mix(seed));
+        simulation.reset(level);
+        float steer = random.nextFloat();
+        float strength = MAX_ACCELERATION * (0.2f + 0.8f*random.nextFloat());
+        int hold = MIN_HOLD_STEPS + random.nextInt(MAX_HOLD_STEPS - MIN_HOLD_STEPS);
+        Vector2 acceleration = new Vector2();
+        Simulation.Event event = Simulation.Event.NONE;
+        for(long i=0; i<maxSteps; i++) {
+            if(i % hold == 0) {
+                float dx = level.getHole().getX() - simulation.getLocation().x;
+                float dy = level.getHole().getY() - simulation.getLocation().y;
+                float d = (float) Math.sqrt(dx*dx + dy*dy);
+                if(d>0) {
+                    dx /= d;
+                    dy /= d;
+                }
+                double angle = random.nextDouble() * 2 * Math.PI;
+                acceleration.set(strength * (steer*dx + (1 - steer)*(float) Math.cos(angle)),
+                        strength * (steer*dy + (1 - steer)*(float) Math.sin(angle)));
+                // played on the values a replay holds, so the best game can be saved and repeated exactly
+                ReplayRecorder.quantize(acceleration);
+            }
+            if(recorder!=null) recorder.record(acceleration);
+            simulation.setAcceleration(acceleration.x, acceleration.y);
+            event = simulation.step();
+            if(event==Simulation.Event.HOLE || event==Simulation.Event.TRAP) return event;
+        }
+        return Simulation.Event.NONE;
+    }
+
+    /**
+     * the splitmix64 finalizer: every bit of the seed affects every bit of the result
+     */
+    static long mix(long seed) {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // tasks only live inside the pool and are never serialized
+    @SuppressWarnings("serial")
+    private class Batch extends RecursiveTask<SolverStats> {
+        private final int from;
+        private final int to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SolverStats compute() {
+            if(to - from > BATCH_GAMES) {
+                int mid = (from + to) >>> 1;
+                Batch left = new Batch(from, mid);
+                left.fork();
+                SolverStats right = new Batch(mid, to).compute();
+                return left.join().merge(right);
+            }
+            SolverStats stats = new SolverStats();
+            Simulation simulation = new Simulation(timeStep);
+            Random random = new Random();
+            for(int game=from; game<to; game++) {
+                long seed = seed(game);
+                Simulation.Event event = play(simulation, random, seed, null);
+                stats.addGame(seed, event, simulation.getSteps(), simulation.getLocation().x, simulation.getLocation().y);
+            }
+            return stats;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length<1) {
+            System.err.println("usage: LevelSolver <levels.json> [games per level] [threads] [replay dir]");
+            System.exit(1);
+        }
+        LevelPack pack;
+        try(Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(args[0])), StandardCharsets.UTF_8)) {
+            pack = new Gson().fromJson(reader, LevelPack.class);
+        }
+        int games = args.length>1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        int threads = args.length>2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        File replayDir = args.length>3 ? new File(args[3]) : null;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long totalGames = 0;
+        long totalSteps = 0;
+        long start = System.nanoTime();
+        for(Level level : pack.getLevels()) {
+            LevelSolver solver = new LevelSolver(level, TIME_STEP);
+            SolverStats stats = solver.solve(pool, games);
+            totalGames += stats.getGames();
+            totalSteps += stats.getSteps();
+            print(level, stats);
+            if(replayDir!=null && stats.getSolved()>0) {
+                saveReplay(solver, stats.getBestSeed(), new File(replayDir, "level" + level.getNumber() + ".sbr"));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        System.out.println(String.format(Locale.US, "%d games, %d steps in %.2f s on %d threads, %.1f M steps/s",
+                totalGames, totalSteps, elapsed*1e-9, threads, totalSteps*1000f/elapsed));
+    }
+
+    private static void print(Level level, SolverStats stats) {
+        float solvedPercent = 100f * stats.getSolved() / stats.getGames();
+        if(stats.getSolved()==0) {
+            System.out.println(String.format(Locale.US, "level %d: UNSOLVED in %d games (limit %d s)",
+                    level.getNumber(), stats.getGames(), level.getTime()));
+        } else {
+            float best = stats.getBestSteps() * TIME_STEP;
+            float median = stats.getCompletionSteps(0.5) * TIME_STEP;
+            System.out.println(String.format(Locale.US,
+                    "level %d: %.1f%% of %d games solved, best %.2f s, median %.2f s, par %d s (limit %d s, %d points)",
+                    level.getNumber(), solvedPercent, stats.getGames(), best, median,
+                    (int) Math.ceil(median), level.getTime(), level.getPoints()));
+        }
+        int[] deaths = stats.getTrapDeaths();
+        int max = 0;
+        for(int d : deaths) max = Math.max(max, d);
+        if(max==0) return;
+        System.out.println("  trap deaths (max " + max + " per cell):");
+        int width = (int) Simulation.FIELD_WIDTH;
+        StringBuilder row = new StringBuilder();
+        for(int y=0; y<(int) Simulation.FIELD_HEIGHT; y++) {
+            row.setLength(0);
+            row.append("  |");
+            for(int x=0; x<width; x++) {
+                int d = deaths[y*width + x];
+                row.append(d==0 ? ' ' : SHADES[1 + (int) ((long) (d - 1) * (SHADES.length - 2) / max)]);
+            }
+            row.append('|');
+            System.out.println(row);
+        }
+    }
+
+    private static void saveReplay(LevelSolver solver, long seed, File file) throws IOException {
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(solver.level.getNumber(), solver.timeStep);
+        solver.play(new Simulation(solver.timeStep), new Random(), seed, recorder);
+        File dir = file.getParentFile();
+        if(dir!=null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        try(OutputStream out = new FileOutputStream(file)) {
+            recorder.writeTo(out);
+        }
+    }
+}
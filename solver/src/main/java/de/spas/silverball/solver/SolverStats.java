@@ -0,0 +1,96 @@
+package de.spas.silverball.solver;
+
+import java.util.Arrays;
+
+import de.spas.silverball.physics.Simulation;
+
+/**
+ * Outcome of a batch of simulated games on one level. Batches played in parallel are merged.
+ */
+public class SolverStats {
+
+    private long games;
+    private long steps;
+    private int solved;
+    private int[] completionSteps = new int[16];
+    private final int[] trapDeaths = new int[(int) (Simulation.FIELD_WIDTH * Simulation.FIELD_HEIGHT)];
+    private int bestSteps = Integer.MAX_VALUE;
+    private long bestSeed = -1;
+
+    void addGame(long seed, Simulation.Event event, long gameSteps, float x, float y) {
+        games++;
+        steps += gameSteps;
+        if(event==Simulation.Event.HOLE) {
+            if(solved==completionSteps.length) completionSteps = Arrays.copyOf(completionSteps, solved*2);
+            completionSteps[solved++] = (int) gameSteps;
+            if(gameSteps<bestSteps || gameSteps==bestSteps && seed<bestSeed) {
+                bestSteps = (int) gameSteps;
+                bestSeed = seed;
+            }
+        } else if(event==Simulation.Event.TRAP) {
+            int cx = Math.min((int) Simulation.FIELD_WIDTH - 1, Math.max(0, (int) x));
+            int cy = Math.min((int) Simulation.FIELD_HEIGHT - 1, Math.max(0, (int) y));
+            trapDeaths[cy * (int) Simulation.FIELD_WIDTH + cx]++;
+        }
+    }
+
+    SolverStats merge(SolverStats other) {
+        games += other.games;
+        steps += other.steps;
+        if(solved + other.solved > completionSteps.length) {
+            completionSteps = Arrays.copyOf(completionSteps, solved + other.solved);
+        }
+        System.arraycopy(other.completionSteps, 0, completionSteps, solved, other.solved);
+        solved += other.solved;
+        for(int i=0; i<trapDeaths.length; i++) trapDeaths[i] += other.trapDeaths[i];
+        if(other.bestSteps<bestSteps || other.bestSteps==bestSteps && other.bestSeed<bestSeed) {
+            bestSteps = other.bestSteps;
+            bestSeed = other.bestSeed;
+        }
+        return this;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getSolved() {
+        return solved;
+    }
+
+    /**
+     * @return steps of the fastest game that reached the hole, -1 if none did
+     */
+    public int getBestSteps() {
+        return solved>0 ? bestSteps : -1;
+    }
+
+    /**
+     * @return seed of the fastest game that reached the hole, -1 if none did
+     */
+    public long getBestSeed() {
+        return bestSeed;
+    }
+
+    /**
+     * @param fraction 0..1, 0.5 for the median
+     * @return steps the given fraction of the solved games took at most, -1 if none was solved
+     */
+    public int getCompletionSteps(double fraction) {
+        if(solved==0) return -1;
+        int[] sorted = Arrays.copyOf(completionSteps, solved);
+        Arrays.sort(sorted);
+        return sorted[Math.min(solved - 1, (int) (fraction * solved))];
+    }
+
+    /**
+     * @return trap deaths per cell, row by row
+     */
+    public int[] getTrapDeaths() {
+        return trapDeaths;
+    }
+}
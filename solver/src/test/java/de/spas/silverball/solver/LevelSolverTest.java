@@ -0,0 +1,125 @@
+package de.spas.silverball.solver;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import de.spas.silverball.model.Level;
+import de.spas.silverball.model.LevelPack;
+import de.spas.silverball.physics.Simulation;
+import de.spas.silverball.replay.Replay;
+import de.spas.silverball.replay.ReplayPlayer;
+import de.spas.silverball.replay.ReplayRecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Games of LevelSolver are decided by their seed alone, not by the thread count or what ran before.
+ */
+public class LevelSolverTest {
+
+    private static final int GAMES = 300;
+
+    @Test
+    public void sameSeedSameGame() throws IOException {
+        LevelSolver solver = new LevelSolver(level(2), LevelSolver.TIME_STEP);
+        Simulation simulation = new Simulation(LevelSolver.TIME_STEP);
+        Random random = new Random();
+        for(int game=0; game<20; game++) {
+            long seed = solver.seed(game);
+            Simulation.Event first = solver.play(simulation, random, seed, null);
+            long steps = simulation.getSteps();
+            float x = simulation.getLocation().x, y = simulation.getLocation().y;
+            // a game in between must not leak into the repeat
+            solver.play(simulation, random, solver.seed(game + 1000), null);
+            assertEquals(first, solver.play(simulation, random, seed, null));
+            assertEquals(steps, simulation.getSteps());
+            assertEquals(Float.floatToIntBits(x), Float.floatToIntBits(simulation.getLocation().x));
+            assertEquals(Float.floatToIntBits(y), Float.floatToIntBits(simulation.getLocation().y));
+        }
+    }
+
+    @Test
+    public void nearbySeedsDiffer() {
+        // mix() must scramble seeds that differ in the last bit only
+        assertNotEquals(new Random(LevelSolver.mix(1)).nextFloat(), new Random(LevelSolver.mix(2)).nextFloat(), 1e-3f);
+        assertNotEquals(LevelSolver.mix(1L << 32), LevelSolver.mix(1L << 32 | 1));
+    }
+
+    @Test
+    public void resultIndependentOfThreads() throws IOException {
+        LevelPack pack = pack();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            for(Level level : pack.getLevels()) {
+                LevelSolver solver = new LevelSolver(level, LevelSolver.TIME_STEP);
+                SolverStats a = solver.solve(single, GAMES);
+                SolverStats b = solver.solve(many, GAMES);
+                String at = "level " + level.getNumber();
+                assertEquals(at, GAMES, a.getGames());
+                assertEquals(at, a.getGames(), b.getGames());
+                assertEquals(at, a.getSteps(), b.getSteps());
+                assertEquals(at, a.getSolved(), b.getSolved());
+                assertArrayEquals(at, a.getTrapDeaths(), b.getTrapDeaths());
+                if(a.getSolved()>0) {
+                    assertEquals(at, a.getBestSeed(), b.getBestSeed());
+                    assertEquals(at, a.getBestSteps(), b.getBestSteps());
+                    assertEquals(at, a.getCompletionSteps(0.5), b.getCompletionSteps(0.5));
+                }
+            }
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    public void bestGameRepeatsAsReplay() throws IOException {
+        Level level = level(2);
+        LevelSolver solver = new LevelSolver(level, LevelSolver.TIME_STEP);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SolverStats stats;
+        try {
+            stats = solver.solve(pool, GAMES);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue("level 2 unsolved in " + GAMES + " games", stats.getSolved()>0);
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.begin(level.getNumber(), LevelSolver.TIME_STEP);
+        assertEquals(Simulation.Event.HOLE,
+                solver.play(new Simulation(LevelSolver.TIME_STEP), new Random(), stats.getBestSeed(), recorder));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+        ReplayPlayer.Result result = new ReplayPlayer(LevelSolver.TIME_STEP)
+                .play(level, Replay.read(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(Simulation.Event.HOLE, result.event);
+        assertEquals(stats.getBestSteps(), result.steps);
+    }
+
+    private static Level level(int number) throws IOException {
+        for(Level level : pack().getLevels()) {
+            if(level.getNumber()==number) return level;
+        }
+        throw new IllegalArgumentException("no level " + number);
+    }
+
+    private static LevelPack pack() throws IOException {
+        try(Reader reader = new InputStreamReader(LevelSolverTest.class.getResourceAsStream("/levels.json"), StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, LevelPack.class);
+        }
+    }
+}